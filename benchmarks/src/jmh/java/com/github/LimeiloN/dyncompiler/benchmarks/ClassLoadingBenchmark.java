@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.benchmarks;
+
+import com.github.LimeiloN.dyncompiler.CompiledObject;
+import com.github.LimeiloN.dyncompiler.CompilerException;
+import com.github.LimeiloN.dyncompiler.DynCompiler;
+import com.github.LimeiloN.dyncompiler.stores.MemoryResourceStore;
+import com.github.LimeiloN.dyncompiler.stores.ResourceStore;
+import com.github.LimeiloN.dyncompiler.stores.ResourceStoreClassLoader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a fixed set of classes through a fresh {@link ResourceStoreClassLoader}, depending on the number of stores
+ * the classes are spread over.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ClassLoadingBenchmark {
+
+    private static final int CLASS_COUNT = 64;
+
+    @Param({"1", "4", "16", "64"})
+    private int storeCount;
+
+    private ResourceStore[] stores;
+    private List<String> classNames;
+
+    @Setup
+    public void setup() throws CompilerException {
+
+        Map<String, CompiledObject> compiled;
+        try (DynCompiler compiler = new DynCompiler()) {
+            compiled = compiler.compile(Sources.generate(CLASS_COUNT));
+        }
+
+        stores = new ResourceStore[storeCount];
+        for (int i = 0; i < storeCount; i++)
+            stores[i] = new MemoryResourceStore();
+
+        classNames = new ArrayList<>(compiled.keySet());
+        for (int i = 0; i < classNames.size(); i++) {
+            String name = classNames.get(i);
+            stores[i % storeCount].write(name.replace('.', '/') + ".class", compiled.get(name).getBytes());
+        }
+    }
+
+    @Benchmark
+    public void loadAll(Blackhole bh) throws ClassNotFoundException {
+
+        // Classes are defined once per loader, a new loader is needed for each run
+        ResourceStoreClassLoader loader = new ResourceStoreClassLoader(getClass().getClassLoader(), stores);
+
+        for (String name : classNames)
+            bh.consume(loader.loadClass(name));
+    }
+}
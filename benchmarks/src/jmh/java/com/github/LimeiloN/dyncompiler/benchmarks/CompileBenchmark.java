@@ -0,0 +1,68 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.benchmarks;
+
+import com.github.LimeiloN.dyncompiler.CompiledObject;
+import com.github.LimeiloN.dyncompiler.CompilerException;
+import com.github.LimeiloN.dyncompiler.DynCompiler;
+import com.squareup.javapoet.ClassName;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to compile a set of sources in a single {@link DynCompiler#compile(Map)} call, depending on their number.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CompileBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int sourceCount;
+
+    private DynCompiler compiler;
+    private Map<ClassName, String> sources;
+
+    @Setup
+    public void setup() throws CompilerException {
+
+        compiler = new DynCompiler();
+        sources = Sources.generate(sourceCount);
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        compiler.close();
+    }
+
+    @Benchmark
+    public Map<String, CompiledObject> compile() throws CompilerException {
+
+        return compiler.compile(sources);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.benchmarks;
+
+import com.github.LimeiloN.dyncompiler.CompilerException;
+import com.github.LimeiloN.dyncompiler.DynCompiler;
+import com.github.LimeiloN.dyncompiler.compilers.CompilationResult;
+import com.github.LimeiloN.dyncompiler.compilers.JavaCompiler;
+import com.github.LimeiloN.dyncompiler.compilers.JavaCompilerSettings;
+import com.github.LimeiloN.dyncompiler.impl.ecj.EclipseJavaCompiler;
+import com.github.LimeiloN.dyncompiler.impl.janino.JaninoJavaCompiler;
+import com.github.LimeiloN.dyncompiler.readers.MemoryResourceReader;
+import com.github.LimeiloN.dyncompiler.stores.MemoryResourceStore;
+import com.squareup.javapoet.ClassName;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same sources compiled by javac (through {@link DynCompiler}), ECJ and Janino.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CompilerBackendBenchmark {
+
+    @Param({"1", "10"})
+    private int sourceCount;
+
+    private Map<ClassName, String> sources;
+    private String[] resourcePaths;
+    private MemoryResourceReader reader;
+
+    private DynCompiler javac;
+    private JavaCompiler ecj;
+    private JavaCompiler janino;
+    private JavaCompilerSettings ecjSettings;
+    private JavaCompilerSettings janinoSettings;
+
+    @Setup
+    public void setup() throws CompilerException {
+
+        sources = Sources.generate(sourceCount);
+        reader = new MemoryResourceReader();
+        resourcePaths = new String[sources.size()];
+
+        int i = 0;
+        for (Map.Entry<ClassName, String> e : sources.entrySet()) {
+            String path = e.getKey().reflectionName().replace('.', '/') + ".java";
+            reader.add(path, e.getValue().getBytes(StandardCharsets.UTF_8));
+            resourcePaths[i++] = path;
+        }
+
+        javac = new DynCompiler();
+        ecj = new EclipseJavaCompiler();
+        janino = new JaninoJavaCompiler();
+        ecjSettings = settings(ecj);
+        janinoSettings = settings(janino);
+    }
+
+    private static JavaCompilerSettings settings(JavaCompiler compiler) {
+
+        JavaCompilerSettings settings = compiler.createDefaultSettings();
+        settings.setSourceVersion("11");
+        settings.setTargetVersion("11");
+        return settings;
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        javac.close();
+    }
+
+    @Benchmark
+    public Object javac() throws CompilerException {
+
+        return javac.compile(sources);
+    }
+
+    @Benchmark
+    public Object ecj() {
+
+        return compile(ecj, ecjSettings);
+    }
+
+    @Benchmark
+    public Object janino() {
+
+        return compile(janino, janinoSettings);
+    }
+
+    private MemoryResourceStore compile(JavaCompiler compiler, JavaCompilerSettings settings) {
+
+        MemoryResourceStore store = new MemoryResourceStore();
+        CompilationResult result = compiler.compile(resourcePaths, reader, store, getClass().getClassLoader(), settings);
+
+        if (result.getErrors().length > 0)
+            throw new IllegalStateException(compiler.getClass().getSimpleName() + " failed : " + result.getErrors()[0]);
+
+        return store;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.github.LimeiloN.dyncompiler.benchmarks;
+
+import com.github.LimeiloN.dyncompiler.CompilerException;
+import com.github.LimeiloN.dyncompiler.DynCompiler;
+import com.github.LimeiloN.dyncompiler.DynCompilerSettings;
+import com.squareup.javapoet.ClassName;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compilations per second through a single DynCompiler depending on the number of threads compiling concurrently.
+ * Each benchmark thread always compiles the same class, so compiled objects are replaced instead of piling up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CompilerPoolBenchmark {
+
+    private static final String SOURCE = "package bench;" +
+                                         "public class Compiled%d {" +
+                                         "    public static int run(int x) {" +
+                                         "        return x * 2 + %<d;" +
+                                         "    }" +
+                                         "}";
+
+    private DynCompiler compiler;
+
+    @Setup
+    public void setup() throws CompilerException {
+
+        compiler = new DynCompiler(new DynCompilerSettings().setCompilerPoolSize(16));
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        compiler.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Source {
+
+        ClassName name;
+        String code;
+
+        @Setup
+        public void setup(ThreadParams params) {
+
+            int id = params.getThreadIndex();
+            name = ClassName.get("bench", "Compiled" + id);
+            code = String.format(SOURCE, id);
+        }
+    }
+
+    private Object compile(Source source) throws CompilerException {
+
+        return compiler.compile(source.name, source.code);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object threads1(Source source) throws CompilerException {
+
+        return compile(source);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object threads4(Source source) throws CompilerException {
+
+        return compile(source);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object threads8(Source source) throws CompilerException {
+
+        return compile(source);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Object threads16(Source source) throws CompilerException {
+
+        return compile(source);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.benchmarks;
+
+import com.github.LimeiloN.dyncompiler.CompiledObject;
+import com.github.LimeiloN.dyncompiler.CompilerException;
+import com.github.LimeiloN.dyncompiler.DynCompiler;
+import com.github.LimeiloN.dyncompiler.DynamicClassLoader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading classes from several threads through {@link DynamicClassLoader} : lookups of already defined classes on a
+ * shared loader, and definitions of classes in a fresh loader per thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class ConcurrentClassLoadingBenchmark {
+
+    private static final int CLASS_COUNT = 64;
+
+    private Collection<CompiledObject> compiled;
+    private String[] classNames;
+    private DynamicClassLoader shared;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+    }
+
+    @Setup
+    public void setup() throws CompilerException {
+
+        Map<String, CompiledObject> outputs;
+        try (DynCompiler compiler = new DynCompiler()) {
+            outputs = compiler.compile(Sources.generate(CLASS_COUNT));
+        }
+
+        compiled = outputs.values();
+        classNames = outputs.keySet().toArray(new String[0]);
+        shared = new DynamicClassLoader(getClass().getClassLoader());
+        compiled.forEach(shared::addClass);
+    }
+
+    @Benchmark
+    public Class<?> loadShared(Cursor cursor) throws ClassNotFoundException {
+
+        return shared.loadClass(classNames[cursor.next++ % classNames.length]);
+    }
+
+    @Benchmark
+    public void defineFresh(Blackhole bh) throws ClassNotFoundException {
+
+        DynamicClassLoader loader = new DynamicClassLoader(getClass().getClassLoader());
+        compiled.forEach(loader::addClass);
+
+        for (String name : classNames)
+            bh.consume(loader.loadClass(name));
+    }
+}
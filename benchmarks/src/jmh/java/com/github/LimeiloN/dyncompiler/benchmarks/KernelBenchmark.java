@@ -0,0 +1,99 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.benchmarks;
+
+import com.github.LimeiloN.dyncompiler.CompilerException;
+import com.github.LimeiloN.dyncompiler.DoubleExpression;
+import com.github.LimeiloN.dyncompiler.DynCompiler;
+import com.github.LimeiloN.dyncompiler.EvalContext;
+import com.github.LimeiloN.dyncompiler.Kernel;
+import com.squareup.javapoet.TypeName;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of an expression evaluated over columns, one call per row against a single {@link Kernel} call.
+ * The per row loop is the best case, its call site only ever sees one expression so it's inlined ; the loop of a
+ * kernel doesn't depend on the call site.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class KernelBenchmark {
+
+    @Param({"1000", "1000000"})
+    private int rows;
+
+    private DynCompiler compiler;
+    private DoubleExpression perRow;
+    private Kernel kernel;
+    private double[] qty;
+    private double[] price;
+    private double[] out;
+    private Object[] columns;
+
+    @Setup
+    public void setup() throws CompilerException {
+
+        compiler = new DynCompiler();
+        perRow = compiler.prepareDouble("qty * price + 1", "qty", "price");
+        kernel = compiler.compileKernel("qty * price + 1", new EvalContext<>(double.class).addParam("qty", TypeName.DOUBLE)
+                                                                                          .addParam("price", TypeName.DOUBLE));
+        qty = new double[rows];
+        price = new double[rows];
+        out = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            qty[i] = i;
+            price[i] = i * 0.25;
+        }
+        columns = new Object[]{qty, price};
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        compiler.close();
+    }
+
+    @Benchmark
+    public double[] perRow() {
+
+        double[] args = new double[2];
+        for (int i = 0; i < rows; i++) {
+            args[0] = qty[i];
+            args[1] = price[i];
+            out[i] = perRow.eval(args);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] kernel() {
+
+        kernel.apply(columns, out, 0, rows);
+        return out;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.benchmarks;
+
+import com.squareup.javapoet.ClassName;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sources shared by the benchmarks, written in the subset of Java all the compiler backends support.
+ */
+final class Sources {
+
+    static final String PACKAGE = "bench";
+
+    private static final String SOURCE = "package bench;\n" +
+                                         "public class Source%d {\n" +
+                                         "    private static final int[] VALUES = new int[16];\n" +
+                                         "    public static int run(int x) {\n" +
+                                         "        int sum = 0;\n" +
+                                         "        for (int i = 0; i < VALUES.length; i++) {\n" +
+                                         "            sum += VALUES[i] * x + i;\n" +
+                                         "        }\n" +
+                                         "        return %s;\n" +
+                                         "    }\n" +
+                                         "}\n";
+
+    private Sources() {
+
+    }
+
+    /**
+     * @param count the number of classes
+     * @return classes calling each other, indexed by their name
+     */
+    static Map<ClassName, String> generate(int count) {
+
+        Map<ClassName, String> sources = new LinkedHashMap<>(count);
+
+        for (int i = 0; i < count; i++) {
+            String ret = i == 0 ? "sum" : "sum + Source" + (i - 1) + ".run(x)";
+            sources.put(ClassName.get(PACKAGE, "Source" + i), String.format(SOURCE, i, ret));
+        }
+
+        return sources;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler;
+
+import com.github.LimeiloN.dyncompiler.internal.Utils;
+import com.squareup.javapoet.ClassName;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-disk cache of compilation outputs, addressed by a hash of the compiled sources, the compiler options and the
+ * running JDK. Each compilation is stored as a single bundle file holding all of its classes.
+ * <p>
+ * Bundles are written to a temporary file, synced to the disk, then atomically moved in place, so readers never see a
+ * partial bundle and the directory stays usable after a crash. Unreadable bundles are treated as misses.
+ * <p>
+ * Classes referenced by the sources aren't part of the key : changing the content of the classpath without changing
+ * its entries requires clearing the directory. Compilations resolving against in-memory class files (see
+ * {@link DynCompilerSettings#setRetainClassFiles(boolean)}) aren't cached at all.
+ */
+final class BytecodeCache {
+
+    private static final Logger log = LogManager.getLogger(BytecodeCache.class);
+
+    private static final int MAGIC = 0xDC0BC0DE;
+    private static final String EXTENSION = ".classes";
+
+    private final Path directory;
+
+    BytecodeCache(Path directory) throws IOException {
+
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * @param sources the compilation units
+     * @param options the compiler options
+     * @return the key of the compilation
+     */
+    static String key(List<SourceObject> sources, List<String> options) {
+
+        List<SourceObject> sorted = new ArrayList<>(sources);
+        sorted.sort(Comparator.comparing(SourceObject::getCanonicalName));
+
+        List<String> contents = new ArrayList<>(4 + options.size() + 2 * sorted.size());
+        contents.add(System.getProperty("java.vm.vendor"));
+        contents.add(System.getProperty("java.vm.version"));
+        contents.add(System.getProperty("java.class.path"));
+        contents.add(String.valueOf(options.size()));
+        contents.addAll(options);
+        for (SourceObject source : sorted) {
+            contents.add(source.getCanonicalName());
+            contents.add(source.code);
+        }
+
+        return Utils.sha256(contents.toArray(new String[0]));
+    }
+
+    /**
+     * @param key the key of the compilation
+     * @return the compiled classes indexed by their binary name, null if the compilation isn't cached
+     */
+    Map<String, CompiledObject> get(String key) {
+
+        Path bundle = directory.resolve(key + EXTENSION);
+
+        if (!Files.isRegularFile(bundle))
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(bundle)))) {
+
+            if (in.readInt() != MAGIC)
+                throw new IOException("Bad magic number");
+
+            int count = in.readInt();
+            Map<String, CompiledObject> classes = new HashMap<>(count);
+
+            for (int i = 0; i < count; i++) {
+                String qname = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+
+                String[] splitted = Utils.splitQName(qname);
+                classes.put(qname, new CompiledObject(ClassName.get(splitted[0], splitted[1]), bytes));
+            }
+
+            return classes;
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable bytecode cache entry " + bundle, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the outputs of a compilation. Failures are logged, the cache is only an optimization.
+     *
+     * @param key     the key of the compilation
+     * @param classes the compiled classes indexed by their binary name
+     */
+    void put(String key, Map<String, CompiledObject> classes) {
+
+        Path tmp = null;
+
+        try {
+            tmp = Files.createTempFile(directory, key, ".tmp");
+
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+                out.writeInt(MAGIC);
+                out.writeInt(classes.size());
+                for (Map.Entry<String, CompiledObject> e : classes.entrySet()) {
+                    byte[] bytes = e.getValue().getBytes();
+                    out.writeUTF(e.getKey());
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+                out.flush();
+                // On disk before the move, or a crash could leave an empty or torn bundle under a valid key
+                channel.force(true);
+            }
+
+            Files.move(tmp, directory.resolve(key + EXTENSION), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Unable to write bytecode cache entry " + key, e);
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
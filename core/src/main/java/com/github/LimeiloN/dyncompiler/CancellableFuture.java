@@ -0,0 +1,103 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.github.LimeiloN.dyncompiler;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A CompletableFuture backed by a task submitted to an executor. Cancelling it also cancels the task : a task still in
+ * the executor queue stays there, but skips its work when it's run. A running task is never interrupted : javac reads
+ * the class path through interruptible channels, an interrupt would close them and break the pooled file manager (and
+ * the listings of the class path index) for every later compilation. It completes, but its result is discarded.
+ *
+ * @param <T> the type of the result
+ */
+final class CancellableFuture<T> extends CompletableFuture<T> {
+
+    private volatile Future<?> task;
+    private volatile boolean started;
+
+    private CancellableFuture() {
+
+    }
+
+    /**
+     * Submits the callable to the executor.
+     *
+     * @return a future completed with the result of the callable, completed exceptionally if the executor rejects it
+     */
+    static <T> CancellableFuture<T> submit(ExecutorService executor, Callable<T> callable) {
+
+        CancellableFuture<T> future = new CancellableFuture<>();
+
+        try {
+            future.task = executor.submit(() -> {
+                // Cancelled while waiting in the queue
+                if (future.isDone())
+                    return;
+                future.started = true;
+                try {
+                    future.complete(callable.call());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+
+        // Cancelled before the task was assigned
+        if (future.isCancelled() && future.task != null)
+            future.task.cancel(false);
+
+        return future;
+    }
+
+    /**
+     * Cancels the task if it hasn't started yet.
+     */
+    void cancelIfQueued() {
+
+        if (!started)
+            cancel(false);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        Future<?> t = task;
+
+        if (cancelled && t != null)
+            t.cancel(false);
+
+        return cancelled;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler;
+
+import com.github.LimeiloN.dyncompiler.cache.CacheStats;
+
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Listings of the platform and class path packages, shared by all the javac tasks of a compiler so the jars and
+ * directories are only scanned once. Each javac task lists again every package it resolves a type from, through its
+ * own file manager.
+ * <p>
+ * The listings are dropped when the class path of a file manager differs from the one they were made with. The file
+ * objects of a listing are the ones of the file manager that made it, they stay readable as long as it isn't closed :
+ * the sessions of a compiler are only closed with it.
+ */
+final class ClassPathIndex {
+
+    // Replaced on invalidation, so a listing made meanwhile lands in the dropped map
+    private volatile ConcurrentMap<Key, List<JavaFileObject>> listings;
+    // The class path the listings were made with, null until the first file manager is validated
+    private volatile List<Path> classPath;
+
+    private final AtomicLong hitCount;
+    private final AtomicLong missCount;
+    private final AtomicLong invalidationCount;
+
+    ClassPathIndex() {
+
+        this.listings = new ConcurrentHashMap<>();
+        this.hitCount = new AtomicLong();
+        this.missCount = new AtomicLong();
+        this.invalidationCount = new AtomicLong();
+    }
+
+    /**
+     * Drops the listings if the class path of the file manager isn't the one they were made with.
+     *
+     * @param fileManager the file manager of a task about to use the index
+     */
+    void validate(JavaFileManager fileManager) {
+
+        if (!(fileManager instanceof StandardJavaFileManager))
+            return;
+
+        List<Path> current = new ArrayList<>();
+        Iterable<? extends Path> paths = ((StandardJavaFileManager) fileManager).getLocationAsPaths(StandardLocation.CLASS_PATH);
+        if (paths != null)
+            paths.forEach(current::add);
+
+        if (current.equals(classPath))
+            return;
+
+        synchronized (this) {
+            if (!current.equals(classPath)) {
+                if (classPath != null)
+                    invalidate();
+                classPath = current;
+            }
+        }
+    }
+
+    /**
+     * Drops all the listings, eg. when a class path directory was modified.
+     */
+    void invalidate() {
+
+        listings = new ConcurrentHashMap<>();
+        invalidationCount.incrementAndGet();
+    }
+
+    /**
+     * @return the listing of the package, computed by the file manager on a miss
+     */
+    List<JavaFileObject> list(JavaFileManager fileManager, JavaFileManager.Location location, String packageName,
+                              Set<JavaFileObject.Kind> kinds, boolean recurse) throws IOException {
+
+        ConcurrentMap<Key, List<JavaFileObject>> current = listings;
+        Key key = new Key(location, packageName, kinds, recurse);
+        List<JavaFileObject> listing = current.get(key);
+
+        if (listing != null) {
+            hitCount.incrementAndGet();
+            return listing;
+        }
+
+        missCount.incrementAndGet();
+        List<JavaFileObject> listed = new ArrayList<>();
+        fileManager.list(location, packageName, kinds, recurse).forEach(listed::add);
+        listing = Collections.unmodifiableList(listed);
+        current.put(key, listing);
+        return listing;
+    }
+
+    /**
+     * Sources and outputs change between tasks, only the class paths are indexed.
+     */
+    static boolean isIndexed(JavaFileManager.Location location) {
+
+        return !location.isOutputLocation()
+               && location != StandardLocation.SOURCE_PATH
+               && location != StandardLocation.MODULE_SOURCE_PATH
+               && location != StandardLocation.ANNOTATION_PROCESSOR_PATH
+               && location != StandardLocation.ANNOTATION_PROCESSOR_MODULE_PATH;
+    }
+
+    CacheStats stats() {
+
+        return new CacheStats(hitCount.get(), missCount.get(), invalidationCount.get());
+    }
+
+    /**
+     * Locations of different file managers are different instances (module locations are created by each file
+     * manager), they're identified by their name.
+     */
+    private static final class Key {
+
+        final String location;
+        final String packageName;
+        final Set<JavaFileObject.Kind> kinds;
+        final boolean recurse;
+        private final int hash;
+
+        Key(JavaFileManager.Location location, String packageName, Set<JavaFileObject.Kind> kinds, boolean recurse) {
+
+            this.location = location.getName();
+            this.packageName = packageName;
+            this.kinds = kinds.isEmpty() ? EnumSet.noneOf(JavaFileObject.Kind.class) : EnumSet.copyOf(kinds);
+            this.recurse = recurse;
+            this.hash = Objects.hash(this.location, packageName, this.kinds, recurse);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+
+            Key other = (Key) o;
+            return hash == other.hash
+                   && recurse == other.recurse
+                   && location.equals(other.location)
+                   && packageName.equals(other.packageName)
+                   && kinds.equals(other.kinds);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.github.LimeiloN.dyncompiler;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaFileObject;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the diagnostics of a single compilation task. At most a fixed number of diagnostics are retained, errors
+ * taking precedence over warnings, and every diagnostic can be streamed to another listener as it's reported.
+ */
+final class CompilationDiagnostics implements DiagnosticListener<JavaFileObject> {
+
+    private final int maxRetained;
+    private final DiagnosticListener<? super JavaFileObject> forward;
+    private final List<Diagnostic<? extends JavaFileObject>> retained;
+    private int dropped;
+    private int errors;
+
+    /**
+     * @param maxRetained the maximum number of diagnostics to retain
+     * @param forward     a listener notified of every diagnostic, may be null
+     */
+    CompilationDiagnostics(int maxRetained, DiagnosticListener<? super JavaFileObject> forward) {
+
+        this.maxRetained = maxRetained;
+        this.forward = forward;
+        this.retained = new ArrayList<>(Math.min(maxRetained, 16));
+    }
+
+    @Override
+    public void report(Diagnostic<? extends JavaFileObject> diagnostic) {
+
+        if (forward != null)
+            forward.report(diagnostic);
+
+        if (diagnostic.getKind() == Diagnostic.Kind.ERROR)
+            errors++;
+
+        if (retained.size() < maxRetained) {
+            retained.add(diagnostic);
+            return;
+        }
+
+        dropped++;
+
+        // Make room for an error by dropping a retained warning
+        if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+            for (int i = retained.size() - 1; i >= 0; i--) {
+                if (retained.get(i).getKind() != Diagnostic.Kind.ERROR) {
+                    retained.remove(i);
+                    retained.add(diagnostic);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the retained diagnostics, in the order they were reported
+     */
+    List<Diagnostic<? extends JavaFileObject>> getDiagnostics() {
+
+        return retained;
+    }
+
+    /**
+     * @return the number of errors reported, retained or not
+     */
+    int getErrorCount() {
+
+        return errors;
+    }
+
+    /**
+     * @return the number of diagnostics that were reported but not retained
+     */
+    int getDroppedCount() {
+
+        return dropped;
+    }
+}
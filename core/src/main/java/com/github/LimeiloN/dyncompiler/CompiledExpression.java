@@ -0,0 +1,207 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.github.LimeiloN.dyncompiler;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleProxies;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compiled expression or script, ready to be evaluated any number of times with different arguments.
+ * <p>
+ * Obtained through {@link DynCompiler#prepare(String, EvalContext)}, the compilation only happens once.
+ *
+ * @param <T> the type of the values returned by the expression
+ */
+public final class CompiledExpression<T> {
+
+    /**
+     * Name of the static method returning a full privilege lookup on the generated class.
+     */
+    static final String LOOKUP_METHOD = "$lookup";
+
+    private final Method method;
+    // Functional interface -> implementation bound to the method
+    private final Map<Class<?>, Object> functions;
+
+    CompiledExpression(Method method) {
+
+        this.method = method;
+        this.functions = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Evaluates the expression.
+     *
+     * @param args the arguments, in the order their parameters were added to the {@link EvalContext}
+     * @return the result of the expression
+     * @throws InvocationTargetException if the expression throws an exception
+     * @throws IllegalArgumentException  if the arguments don't match the parameters of the expression
+     */
+    @SuppressWarnings("unchecked")
+    public T eval(Object... args) throws InvocationTargetException {
+
+        try {
+            return (T) method.invoke(null, args);
+        } catch (IllegalAccessException e) {
+            // Generated methods are always public
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the number of arguments expected by {@link #eval(Object...)}
+     */
+    public int getParameterCount() {
+
+        return method.getParameterCount();
+    }
+
+    /**
+     * @return the generated static method backing this expression
+     */
+    public Method getMethod() {
+
+        return method;
+    }
+
+    /**
+     * Binds the expression to a functional interface. The returned instance calls the generated method directly,
+     * without reflection nor argument boxing when the interface has primitive parameters, so it can be inlined by the JIT.
+     * Hidden classes are bound through a method handle proxy, which is slower.
+     * <p>
+     * The abstract method of the interface must take as many parameters as the expression, with compatible types.
+     * The interface must be visible from the class loader of the {@link DynCompiler}.
+     *
+     * @param functionalInterface the interface to implement
+     * @return an implementation of the interface, the same instance is returned for a given interface
+     * @throws IllegalArgumentException if the class isn't a functional interface or is incompatible with the expression
+     */
+    public <F> F as(Class<F> functionalInterface) {
+
+        return functionalInterface.cast(functions.computeIfAbsent(functionalInterface, this::bind));
+    }
+
+    private Object bind(Class<?> functionalInterface) {
+
+        Method sam = getFunctionalMethod(functionalInterface);
+
+        if (sam.getParameterCount() != method.getParameterCount())
+            throw new IllegalArgumentException(sam + " expects " + sam.getParameterCount() + " parameters but the expression has "
+                                               + method.getParameterCount());
+
+        try {
+            MethodHandles.Lookup lookup = (MethodHandles.Lookup) method.getDeclaringClass()
+                    .getDeclaredMethod(LOOKUP_METHOD)
+                    .invoke(null);
+
+            MethodHandle impl = lookup.unreflect(method);
+            MethodType samType = MethodType.methodType(sam.getReturnType(), sam.getParameterTypes());
+
+            // Lambdas of the JDK can't call into a hidden class by name, go through the method handle instead
+            if (HiddenClassDefiner.isHidden(method.getDeclaringClass()))
+                return MethodHandleProxies.asInterfaceInstance(functionalInterface, impl.asType(samType));
+
+            CallSite site = LambdaMetafactory.metafactory(lookup,
+                                                          sam.getName(),
+                                                          MethodType.methodType(functionalInterface),
+                                                          samType,
+                                                          impl,
+                                                          instantiatedType(samType, impl.type()));
+            return site.getTarget().invoke();
+        } catch (LambdaConversionException e) {
+            throw new IllegalArgumentException("Can't bind the expression to " + functionalInterface.getName(), e);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Can't bind the expression to " + functionalInterface.getName(), e);
+        }
+    }
+
+    /**
+     * Computes the most specific signature that both matches the interface method and the implementation,
+     * (eg. implementing {@code Function<Double, Double>} with {@code double f(double)} gives {@code Double (Double)})
+     */
+    private static MethodType instantiatedType(MethodType sam, MethodType impl) {
+
+        MethodType type = MethodType.methodType(specialize(sam.returnType(), impl.returnType()));
+
+        for (int i = 0; i < sam.parameterCount(); i++)
+            type = type.appendParameterTypes(specialize(sam.parameterType(i), impl.parameterType(i)));
+
+        return type;
+    }
+
+    private static Class<?> specialize(Class<?> samType, Class<?> implType) {
+
+        if (samType.isPrimitive() || samType == void.class)
+            return samType;
+
+        Class<?> boxed = MethodType.methodType(implType).wrap().returnType();
+        return samType.isAssignableFrom(boxed) ? boxed : samType;
+    }
+
+    static Method getFunctionalMethod(Class<?> functionalInterface) {
+
+        if (!functionalInterface.isInterface())
+            throw new IllegalArgumentException(functionalInterface.getName() + " is not an interface");
+
+        Method sam = null;
+
+        for (Method m : functionalInterface.getMethods()) {
+
+            if (!Modifier.isAbstract(m.getModifiers()) || isObjectMethod(m))
+                continue;
+
+            if (sam != null && !(sam.getName().equals(m.getName()) && sam.getParameterCount() == m.getParameterCount()))
+                throw new IllegalArgumentException(functionalInterface.getName() + " has more than one abstract method");
+
+            sam = m;
+        }
+
+        if (sam == null)
+            throw new IllegalArgumentException(functionalInterface.getName() + " has no abstract method");
+
+        return sam;
+    }
+
+    private static boolean isObjectMethod(Method m) {
+
+        try {
+            Object.class.getMethod(m.getName(), m.getParameterTypes());
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
@@ -25,35 +25,161 @@
 
 package com.github.LimeiloN.dyncompiler;
 
+import com.github.LimeiloN.dyncompiler.cache.ByteBufferPool;
 import com.github.LimeiloN.dyncompiler.internal.Utils;
 import com.squareup.javapoet.ClassName;
 
 import javax.tools.SimpleJavaFileObject;
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
+/**
+ * A class file in memory. Class files are written into buffers of a shared pool, which are given back to the pool
+ * once the class is defined when the object was handed over to its loader.
+ */
 public class CompiledObject extends SimpleJavaFileObject {
 
+    private static final ByteBufferPool POOL = new ByteBufferPool(1 << 10, 1 << 20, 32L << 20);
+    // Moving average of the size of the written class files, the first buffer of an output is sized after it
+    private static volatile int sizeHint = 4 << 10;
+
     final ClassName className;
-    private final ByteArrayOutputStream baos;
+    // Null once released
+    private ByteBuffer buffer;
+    private int size;
+    private volatile boolean handedOver;
 
     CompiledObject(ClassName className) {
 
+        this(className, sizeHint);
+    }
+
+    private CompiledObject(ClassName className, int capacity) {
+
         super(URI.create(Utils.getCanonicalName(className)), Kind.CLASS);
         this.className = className;
-        this.baos = new ByteArrayOutputStream();
+        this.buffer = POOL.acquire(capacity);
+    }
+
+    /**
+     * @param className the class name
+     * @param bytes     the class file, compiled beforehand
+     */
+    CompiledObject(ClassName className, byte[] bytes) {
+
+        this(className, bytes.length);
+        write(bytes, 0, bytes.length);
     }
 
     @Override
     public OutputStream openOutputStream() {
 
-        return baos;
+        return new OutputStream() {
+
+            @Override
+            public void write(int b) {
+
+                CompiledObject.this.write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+
+                CompiledObject.this.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+
+                sizeHint = (sizeHint * 7 + size) / 8;
+            }
+        };
+    }
+
+    /**
+     * Reads the class file, when it's given back to a compiler as an input.
+     */
+    @Override
+    public synchronized InputStream openInputStream() {
+
+        return new ByteArrayInputStream(buffer().array(), 0, size);
+    }
+
+    @Override
+    public boolean isNameCompatible(String simpleName, Kind kind) {
+
+        return kind == Kind.CLASS && simpleName.equals(className.simpleName());
     }
 
-    public byte[] getBytes() {
+    private synchronized void write(byte[] b, int off, int len) {
+
+        ByteBuffer current = buffer();
+
+        if (current.remaining() < len) {
+            ByteBuffer grown = POOL.acquire(Math.max(size + len, current.capacity() * 2));
+            grown.put(current.array(), 0, size);
+            POOL.release(current);
+            buffer = current = grown;
+        }
+
+        current.put(b, off, len);
+        size += len;
+    }
+
+    /**
+     * @return a copy of the class file
+     */
+    public synchronized byte[] getBytes() {
+
+        return Arrays.copyOf(buffer().array(), size);
+    }
+
+    /**
+     * @return a view of the class file, without copy. It must not be modified, nor used after the class is defined
+     */
+    public synchronized ByteBuffer getBuffer() {
+
+        return ByteBuffer.wrap(buffer().array(), 0, size);
+    }
+
+    /**
+     * @return the size of the class file
+     */
+    public synchronized int getSize() {
+
+        return size;
+    }
+
+    /**
+     * Hands the object over to its loader : nothing else reads it anymore, so its buffer goes back to the pool once
+     * the class is defined.
+     */
+    void handOver() {
+
+        handedOver = true;
+    }
+
+    /**
+     * Called by the loader once the class is defined.
+     */
+    synchronized void defined() {
+
+        if (handedOver && buffer != null) {
+            POOL.release(buffer);
+            buffer = null;
+        }
+    }
+
+    private ByteBuffer buffer() {
+
+        if (buffer == null)
+            throw new IllegalStateException("The class file of " + getCanonicalName() + " was released after its definition");
 
-        return baos.toByteArray();
+        return buffer;
     }
 
     public ClassName getClassName() {
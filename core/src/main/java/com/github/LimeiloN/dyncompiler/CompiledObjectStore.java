@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler;
+
+import com.github.LimeiloN.dyncompiler.internal.Utils;
+import com.github.LimeiloN.dyncompiler.stores.ResourceStore;
+import com.squareup.javapoet.ClassName;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Receives the class files written by a compiler backend as {@link CompiledObject}, the same way {@link FileManager}
+ * does for javac.
+ */
+final class CompiledObjectStore implements ResourceStore {
+
+    private final DynamicClassLoader classLoader;
+    // Indexed by binary name
+    private final Map<String, CompiledObject> outputs;
+
+    /**
+     * @param classLoader the loader the classes are registered into, null to only collect them
+     */
+    CompiledObjectStore(DynamicClassLoader classLoader) {
+
+        this.classLoader = classLoader;
+        this.outputs = new HashMap<>();
+    }
+
+    @Override
+    public synchronized void write(String pResourceName, byte[] pResourceData) {
+
+        String qname = Utils.convertResourceToClassName(pResourceName);
+        String[] splitted = Utils.splitQName(qname);
+        CompiledObject co = new CompiledObject(ClassName.get(splitted[0], splitted[1]), pResourceData);
+        outputs.put(qname, co);
+
+        if (classLoader != null)
+            classLoader.addClass(co);
+    }
+
+    @Override
+    public synchronized byte[] read(String pResourceName) {
+
+        CompiledObject co = outputs.get(Utils.convertResourceToClassName(pResourceName));
+        return co == null ? null : co.getBytes();
+    }
+
+    @Override
+    public synchronized byte[] remove(String pResourceName) {
+
+        CompiledObject co = outputs.remove(Utils.convertResourceToClassName(pResourceName));
+        return co == null ? null : co.getBytes();
+    }
+
+    /**
+     * @return the classes written to this store, indexed by their binary name
+     */
+    synchronized Map<String, CompiledObject> getOutputs() {
+
+        return outputs;
+    }
+}
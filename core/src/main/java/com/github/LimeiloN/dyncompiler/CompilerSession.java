@@ -0,0 +1,60 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.github.LimeiloN.dyncompiler;
+
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A javac pipeline : a standard file manager. A session is not thread safe and is used by one compilation task at a
+ * time, sessions are pooled by the {@link CompilerSessionPool}.
+ */
+final class CompilerSession implements Closeable {
+
+    final StandardJavaFileManager fileManager;
+    // Diagnostics of the task currently using this session, file manager diagnostics are reported there too
+    volatile DiagnosticListener<? super JavaFileObject> diagnostics;
+
+    CompilerSession(JavaCompiler compiler) {
+
+        this.fileManager = compiler.getStandardFileManager(diagnostic -> {
+            DiagnosticListener<? super JavaFileObject> current = diagnostics;
+            if (current != null)
+                current.report(diagnostic);
+        }, null, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        fileManager.close();
+    }
+}
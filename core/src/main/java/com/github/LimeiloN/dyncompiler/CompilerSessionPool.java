@@ -0,0 +1,148 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.github.LimeiloN.dyncompiler;
+
+import com.github.LimeiloN.dyncompiler.internal.Utils;
+
+import javax.tools.JavaCompiler;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of {@link CompilerSession}, so independent compilations run in parallel each in their own session.
+ * Sessions are created lazily, when all of them are in use callers wait for one to be released.
+ * <p>
+ * Platform classes are indexed once for all the sessions by javac itself (its jrt index is shared between file managers).
+ */
+final class CompilerSessionPool implements AutoCloseable {
+
+    // How often a caller waiting for a session checks whether the pool has been closed
+    private static final long WAIT_POLL_MILLIS = 100;
+
+    private final JavaCompiler compiler;
+    private final int maximumSize;
+    private final BlockingQueue<CompilerSession> idle;
+    private final AtomicInteger created;
+    private volatile boolean closed;
+
+    CompilerSessionPool(JavaCompiler compiler, int maximumSize) {
+
+        if (maximumSize < 1)
+            throw new IllegalArgumentException("The compiler pool size must be at least 1");
+
+        this.compiler = compiler;
+        this.maximumSize = maximumSize;
+        this.idle = new LinkedBlockingQueue<>();
+        this.created = new AtomicInteger();
+    }
+
+    /**
+     * Takes an idle session, creates one if the pool isn't full or waits for one to be released.
+     *
+     * @return a session that must be given back with {@link #release(CompilerSession)}
+     * @throws CompilerException     if interrupted while waiting for a session
+     * @throws IllegalStateException if the pool is closed, including while waiting for a session
+     */
+    CompilerSession acquire() throws CompilerException {
+
+        checkOpen();
+
+        CompilerSession session = idle.poll();
+
+        if (session != null)
+            return session;
+
+        int n;
+        while ((n = created.get()) < maximumSize) {
+            if (created.compareAndSet(n, n + 1))
+                return new CompilerSession(compiler);
+        }
+
+        try {
+            // Wait with a timeout so close() is noticed even when no session is released anymore
+            while ((session = idle.poll(WAIT_POLL_MILLIS, TimeUnit.MILLISECONDS)) == null)
+                checkOpen();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompilerException(e, null);
+        }
+
+        if (closed) {
+            release(session);
+            checkOpen();
+        }
+        return session;
+    }
+
+    /**
+     * Gives a session back to the pool, or closes it if the pool has been closed.
+     */
+    void release(CompilerSession session) {
+
+        if (closed) {
+            Utils.closeQuietly(session);
+            return;
+        }
+
+        idle.add(session);
+        // close() may have drained the queue before the session was added
+        if (closed)
+            closeIdle();
+    }
+
+    /**
+     * @return the maximum number of sessions, hence of parallel compilations
+     */
+    int getMaximumSize() {
+
+        return maximumSize;
+    }
+
+    /**
+     * Closes the idle sessions, sessions in use are closed when released.
+     */
+    @Override
+    public void close() {
+
+        closed = true;
+        closeIdle();
+    }
+
+    private void closeIdle() {
+
+        CompilerSession session;
+        while ((session = idle.poll()) != null)
+            Utils.closeQuietly(session);
+    }
+
+    private void checkOpen() {
+
+        if (closed)
+            throw new IllegalStateException("The compiler has been closed");
+    }
+}
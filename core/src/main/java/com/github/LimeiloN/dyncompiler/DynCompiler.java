@@ -25,52 +25,270 @@
 
 package com.github.LimeiloN.dyncompiler;
 
+import com.github.LimeiloN.dyncompiler.cache.BoundedCache;
+import com.github.LimeiloN.dyncompiler.cache.CacheStats;
+import com.github.LimeiloN.dyncompiler.compilers.AdaptiveJavaCompiler;
+import com.github.LimeiloN.dyncompiler.compilers.CompilationResult;
+import com.github.LimeiloN.dyncompiler.compilers.JavaCompilerSettings;
+import com.github.LimeiloN.dyncompiler.events.CompileEvent;
+import com.github.LimeiloN.dyncompiler.events.CompilePhaseEvent;
+import com.github.LimeiloN.dyncompiler.expr.BytecodeEmitter;
+import com.github.LimeiloN.dyncompiler.expr.ExpressionParser;
+import com.github.LimeiloN.dyncompiler.expr.InterpretedExpression;
+import com.github.LimeiloN.dyncompiler.expr.UnsupportedExpressionException;
 import com.github.LimeiloN.dyncompiler.internal.Utils;
+import com.github.LimeiloN.dyncompiler.metrics.CompilerMetrics;
+import com.github.LimeiloN.dyncompiler.metrics.DynCompilerMonitor;
+import com.github.LimeiloN.dyncompiler.metrics.MetricsSnapshot;
+import com.github.LimeiloN.dyncompiler.problems.CompilationProblem;
+import com.github.LimeiloN.dyncompiler.readers.MemoryResourceReader;
 import com.squareup.javapoet.*;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import javax.lang.model.element.Modifier;
-import javax.tools.DiagnosticCollector;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.tools.DiagnosticListener;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaFileObject;
 import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The main class of the library. Use it to compile, runScript or evalExp code at runtime.
  *
- * <b>Note :</b> The constructor will throw an error if the current platform doesn't provide a compiler.
+ * <b>Note :</b> Unless a compiler backend is set in the settings, the constructor will throw an error if the current
+ * platform doesn't provide a compiler.
  */
-public class DynCompiler {
+public class DynCompiler implements AutoCloseable {
 
+    private static final Logger log = LogManager.getLogger(DynCompiler.class);
+
+    // Options given to javac, part of the bytecode cache keys
+    private static final List<String> COMPILER_OPTIONS = Collections.emptyList();
+    // How long close waits for the running async compilations
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+    // javac and its sessions, null when a compiler backend is used
     private JavaCompiler compiler;
-    private FileManager fileManager;
-    private DiagnosticCollector<JavaFileObject> diagnostics;
+    private CompilerSessionPool sessions;
+    // null if disabled
+    private ClassPathIndex classPathIndex;
+    // null to use javac
+    private com.github.LimeiloN.dyncompiler.compilers.JavaCompiler backend;
+    private JavaCompilerSettings backendSettings;
+    private int parallelism;
+    private ExecutorService asyncExecutor;
+    private boolean ownsAsyncExecutor;
+    private int maxRetainedDiagnostics;
+    private DiagnosticListener<? super JavaFileObject> diagnosticListener;
+    // Shared loader, parent of the scoped loaders
     private DynamicClassLoader dcl;
+    private int classLoaderGroupSize;
+    private final Object groupLock = new Object();
+    private WeakReference<DynamicClassLoader> groupLoader = new WeakReference<>(null);
+    private int groupCompilations;
+    private boolean hiddenClasses;
+    private boolean directBytecode;
+    private boolean retainClassFiles;
+    // Created on the first generated class defined as hidden
+    private volatile HiddenClassDefiner hiddenDefiner;
+    // null if disabled
+    private BytecodeCache bytecodeCache;
+    // null if disabled
+    private WarmUpManifest warmUpRecorder;
+    private BoundedCache<EvalKey, CompiledExpression<?>> evalCache;
+    // Tasks of the async methods not completed yet, the queued ones are cancelled on close
+    private Set<CancellableFuture<?>> asyncTasks;
+    // Compilations in progress, so concurrent misses on the same script only compile it once
+    private ConcurrentMap<EvalKey, CompletableFuture<CompiledExpression<?>>> pendingEvals;
+    // null if tiered evaluation is disabled
+    private BoundedCache<EvalKey, TieredExpression<?>> tieredCache;
+    private long tieredThreshold;
+    private final IncrementalBuild incrementalBuild = new IncrementalBuild();
+
+    private CompilerMetrics metrics;
+    // Name of the compiler in the latencies
+    private String backendName;
+    // null if not registered
+    private ObjectName mbeanName;
 
     /**
-     * Instantiate a new DynamicCompiler.
+     * Instantiate a new DynamicCompiler with the default settings.
      *
      * @throws CompilerException thrown we're unable to reach the system default compiler.
      */
     public DynCompiler() throws CompilerException {
 
+        this(new DynCompilerSettings());
+    }
+
+    /**
+     * Instantiate a new DynamicCompiler.
+     *
+     * @param settings the settings of this compiler
+     * @throws CompilerException thrown we're unable to reach the system default compiler.
+     */
+    public DynCompiler(DynCompilerSettings settings) throws CompilerException {
+
+        this.backend = settings.getCompilerBackend();
+
+        if (backend != null) {
+            this.backendSettings = settings.getCompilerBackendSettings();
+
+            if (backendSettings == null) {
+                backendSettings = backend.createDefaultSettings();
+                backendSettings.setSourceVersion("11");
+                backendSettings.setTargetVersion("11");
+            }
+        } else {
+            this.compiler = ToolProvider.getSystemJavaCompiler();
 
-        this.compiler = ToolProvider.getSystemJavaCompiler();
+            if (compiler == null) {
+                // Unable to get a compiler instance (maybe we're on a JRE)
+                throw new CompilerException("Unable to instantiate default system compiler. (Maybe we're on a JRE ?)");
+            }
 
-        if (compiler == null) {
-            // Unable to get a compiler instance (maybe we're on a JRE)
-            throw new CompilerException("Unable to instantiate default system compiler. (Maybe we're on a JRE ?)");
+            this.sessions = new CompilerSessionPool(compiler, settings.getCompilerPoolSize());
+            if (settings.isClassPathIndex())
+                this.classPathIndex = new ClassPathIndex();
         }
 
-        this.diagnostics = new DiagnosticCollector<>();
+        this.parallelism = settings.getCompilerPoolSize();
+        this.maxRetainedDiagnostics = settings.getMaxRetainedDiagnostics();
+        this.diagnosticListener = settings.getDiagnosticListener();
         this.dcl = new DynamicClassLoader(getClass().getClassLoader());
-        this.fileManager = new FileManager(compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8), dcl);
+        this.classLoaderGroupSize = settings.getClassLoaderGroupSize();
+        this.hiddenClasses = settings.isHiddenClasses() && HiddenClassDefiner.isSupported();
+        this.directBytecode = settings.isDirectBytecode();
+        this.retainClassFiles = settings.isRetainClassFiles();
+
+        if (settings.getBytecodeCacheDirectory() != null) {
+            try {
+                this.bytecodeCache = new BytecodeCache(settings.getBytecodeCacheDirectory());
+            } catch (IOException e) {
+                throw new CompilerException(e, null);
+            }
+        }
+
+        if (settings.getWarmUpManifest() != null) {
+            try {
+                this.warmUpRecorder = new WarmUpManifest(settings.getWarmUpManifest());
+            } catch (IOException e) {
+                throw new CompilerException(e, null);
+            }
+        }
+
+        this.evalCache = new BoundedCache<>(settings.getEvalCacheMaximumSize(),
+                                            settings.getEvalCacheMaximumWeight(),
+                                            (key, compiled) -> key.script.length());
+        this.pendingEvals = new ConcurrentHashMap<>();
+        this.tieredThreshold = settings.getTieredThreshold();
+
+        if (tieredThreshold > 0)
+            this.tieredCache = new BoundedCache<>(settings.getEvalCacheMaximumSize(),
+                                                  settings.getEvalCacheMaximumWeight(),
+                                                  (key, tiered) -> key.script.length());
+        this.asyncExecutor = settings.getAsyncExecutor();
+        this.ownsAsyncExecutor = asyncExecutor == null;
+        this.asyncTasks = ConcurrentHashMap.newKeySet();
+
+        if (ownsAsyncExecutor) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(settings.getAsyncThreads(),
+                                                                 settings.getAsyncThreads(),
+                                                                 60, TimeUnit.SECONDS,
+                                                                 new ArrayBlockingQueue<>(settings.getAsyncQueueCapacity()),
+                                                                 new AsyncThreadFactory());
+            // Idle compilers shouldn't keep threads alive
+            executor.allowCoreThreadTimeOut(true);
+            this.asyncExecutor = executor;
+        }
+
+        this.metrics = new CompilerMetrics();
+        this.backendName = backend == null ? "javac" : backend.getClass().getSimpleName();
+
+        if (backend instanceof AdaptiveJavaCompiler) {
+            AdaptiveJavaCompiler adaptive = (AdaptiveJavaCompiler) backend;
+            for (com.github.LimeiloN.dyncompiler.compilers.JavaCompiler b : adaptive.getBackends())
+                metrics.addLatency(backendName + "/" + b.getClass().getSimpleName(), adaptive.getLatency(b));
+        }
+
+        if (settings.getMBeanName() != null)
+            registerMBean(settings.getMBeanName());
+    }
+
+    private void registerMBean(String name) throws CompilerException {
+
+        try {
+            this.mbeanName = new ObjectName("com.github.LimeiloN.dyncompiler:type=DynCompiler,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new DynCompilerMonitor(this::getMetrics), mbeanName);
+        } catch (JMException e) {
+            throw new CompilerException(e, null);
+        }
+    }
+
+    /**
+     * @return the current compilation, cache and class loading metrics
+     */
+    public MetricsSnapshot getMetrics() {
+
+        CacheStats tiered = tieredCache != null ? tieredCache.stats() : new CacheStats(0, 0, 0);
+        return metrics.snapshot(evalCache.stats(), tiered);
+    }
+
+    /**
+     * @return the hit, miss and eviction statistics of the cache of compiled expressions and scripts
+     */
+    public CacheStats getEvalCacheStats() {
+
+        return evalCache.stats();
+    }
+
+    /**
+     * @return the hit and miss statistics of the listings of the class path packages, the evictions are the
+     * invalidations of the whole index. Null if the index is disabled or a compiler backend is used
+     */
+    public CacheStats getClassPathIndexStats() {
+
+        return classPathIndex == null ? null : classPathIndex.stats();
+    }
+
+    /**
+     * Drops the listings of the class path packages, to be called when the content of a class path directory changed.
+     * Changes of the class path itself are detected.
+     */
+    public void invalidateClassPathIndex() {
+
+        if (classPathIndex != null)
+            classPathIndex.invalidate();
     }
 
     /**
@@ -82,7 +300,8 @@ public class DynCompiler {
      */
     public Map<String, Class<?>> compileAndLoad(Map<ClassName, String> sources) throws CompilerException {
 
-        return dcl.loadAll(compile(sources).keySet());
+        DynamicClassLoader loader = nextLoader();
+        return loader.loadAll(retainOrHandOver(compile(toSourceObjects(sources), loader), loader).keySet());
     }
 
     /**
@@ -95,10 +314,11 @@ public class DynCompiler {
      */
     public Class<?> compileAndLoad(ClassName cname, String source) throws CompilerException {
 
-        compile(cname, source);
+        DynamicClassLoader loader = nextLoader();
+        retainOrHandOver(compile(Collections.singletonList(new SourceObject(cname, source)), loader), loader);
 
         try {
-            return dcl.loadClass(Utils.getCanonicalName(cname));
+            return loader.loadClass(Utils.getCanonicalName(cname));
         } catch (ClassNotFoundException e) {
             e.printStackTrace();
         }
@@ -107,28 +327,26 @@ public class DynCompiler {
     }
 
     /**
-     * Compile the specified sources.
+     * Compile the specified sources. This method can be called concurrently.
      *
      * @param sources a Map containing the classes and their qualified className.
-     * @return a Map containing the compiled classes and their className.
+     * @return a Map containing the compiled classes (including nested ones) and their className.
      * @throws CompilerException if an error is thrown during compilation
      */
-    public synchronized Map<String, CompiledObject> compile(Map<ClassName, String> sources) throws CompilerException {
+    public Map<String, CompiledObject> compile(Map<ClassName, String> sources) throws CompilerException {
+
+        DynamicClassLoader loader = nextLoader();
+        return retain(compile(toSourceObjects(sources), loader), loader);
+    }
+
+    private static List<SourceObject> toSourceObjects(Map<ClassName, String> sources) {
 
         List<SourceObject> sourceObjs = new ArrayList<>(sources.size());
 
         for (Map.Entry<ClassName, String> e : sources.entrySet())
             sourceObjs.add(new SourceObject(e.getKey(), e.getValue()));
 
-        for (ClassName cname : sources.keySet())
-            dcl.addClass(new CompiledObject(cname));
-
-        JavaCompiler.CompilationTask ctask = compiler.getTask(null, fileManager, diagnostics, null, null, sourceObjs);
-
-        if (!ctask.call()) {
-            throw new CompilerException("Compilation failed !", diagnostics.getDiagnostics());
-        }
-        return dcl.getObjects();
+        return sourceObjs;
     }
 
     /**
@@ -152,16 +370,406 @@ public class DynCompiler {
      * @return
      * @throws CompilerException
      */
-    public synchronized CompiledObject compile(ClassName name, JavaFileObject source) throws CompilerException {
+    public CompiledObject compile(ClassName name, JavaFileObject source) throws CompilerException {
+
+        DynamicClassLoader loader = nextLoader();
+        return retain(compile(Collections.singletonList(source), loader), loader).get(Utils.getCanonicalName(name));
+    }
+
+    /**
+     * Compile a build made of the specified sources, compiling only what changed since the previous incremental build :
+     * the new and modified sources, and the sources depending on a modified or removed one (as found by javac). The
+     * classes of the other sources are reused, without compiling them again. This method can be called concurrently,
+     * builds are serialized.
+     * <p>
+     * Every build is a new generation : its classes are registered into a new class loader, so a modified class
+     * doesn't clash with the one of a previous build. With a compiler backend, the dependencies aren't known and every
+     * source is compiled again.
+     *
+     * @param sources all the sources of the build, sources missing from the previous build are removed from it
+     * @return the classes of all the sources (including nested ones), compiled or reused, indexed by their binary name
+     * @throws CompilerException if a compiled source has errors, the build is then left as it was
+     */
+    public Map<String, CompiledObject> compileIncremental(Map<ClassName, String> sources) throws CompilerException {
+
+        return compileIncremental(sources, new GenerationClassLoader(dcl));
+    }
+
+    /**
+     * Compile a build incrementally and load all its classes from the new generation, see {@link #compileIncremental(Map)}.
+     *
+     * @param sources all the sources of the build
+     * @return the loaded classes of all the sources, indexed by their binary name
+     * @throws CompilerException if a compiled source has errors
+     */
+    public Map<String, Class<?>> compileAndLoadIncremental(Map<ClassName, String> sources) throws CompilerException {
+
+        DynamicClassLoader loader = new GenerationClassLoader(dcl);
+        return loader.loadAll(compileIncremental(sources, loader).keySet());
+    }
+
+    private Map<String, CompiledObject> compileIncremental(Map<ClassName, String> sources, DynamicClassLoader loader) throws CompilerException {
+
+        Map<String, String> named = new LinkedHashMap<>();
+        Map<String, ClassName> classNames = new HashMap<>();
+        for (Map.Entry<ClassName, String> source : sources.entrySet()) {
+            named.put(Utils.getCanonicalName(source.getKey()), source.getValue());
+            classNames.put(Utils.getCanonicalName(source.getKey()), source.getKey());
+        }
+
+        synchronized (incrementalBuild) {
+            Set<String> dirty = incrementalBuild.plan(named, backend == null);
+
+            // Classes which aren't compiled again are given to javac as class files, and defined again from them
+            for (CompiledObject reused : incrementalBuild.reused(named, dirty).values()) {
+                loader.retain(reused);
+                loader.addClass(reused);
+            }
+
+            List<SourceObject> units = new ArrayList<>(dirty.size());
+            for (String name : dirty)
+                units.add(new SourceObject(classNames.get(name), named.get(name)));
+
+            IncrementalBuild.Collector collector = backend == null ? new IncrementalBuild.Collector(units) : null;
+            Map<String, CompiledObject> outputs = units.isEmpty() ? Collections.emptyMap() : compile(units, loader, collector);
+            outputs.values().forEach(loader::retain);
+
+            return incrementalBuild.commit(named, dirty, outputs, collector);
+        }
+    }
+
+    /**
+     * Picks the class loader of the next compilation : the shared loader, or the loader of the current group when
+     * compilations are scoped (starting a new group when it's full or when all its classes were collected).
+     */
+    private DynamicClassLoader nextLoader() {
+
+        if (classLoaderGroupSize == 0)
+            return dcl;
+
+        synchronized (groupLock) {
+            DynamicClassLoader loader = groupLoader.get();
+
+            if (loader == null || groupCompilations >= classLoaderGroupSize) {
+                loader = new DynamicClassLoader(dcl);
+                groupLoader = new WeakReference<>(loader);
+                groupCompilations = 0;
+            }
+
+            groupCompilations++;
+            return loader;
+        }
+    }
+
+    /**
+     * Runs a javac task on the given compilation units, in a session taken from the pool since javac file managers
+     * aren't thread safe. The resulting classes are registered into the given class loader.
+     */
+    private Map<String, CompiledObject> compile(List<? extends JavaFileObject> units, DynamicClassLoader loader) throws CompilerException {
+
+        return compile(units, loader, null);
+    }
+
+    /**
+     * @param collector collects the dependencies of the units, null if not needed. The bytecode cache is bypassed
+     *                  when they're collected, javac has to attribute the units
+     */
+    private Map<String, CompiledObject> compile(List<? extends JavaFileObject> units, DynamicClassLoader loader,
+                                                IncrementalBuild.Collector collector) throws CompilerException {
+
+        String cacheKey = collector == null ? bytecodeCacheKey(units, loader) : null;
+
+        if (cacheKey != null) {
+            Map<String, CompiledObject> cached = bytecodeCache.get(cacheKey);
+
+            if (cached != null) {
+                metrics.recordBytecodeCacheHit();
+                if (loader != null)
+                    cached.values().forEach(loader::addClass);
+                return cached;
+            }
+            metrics.recordBytecodeCacheMiss();
+        }
+
+        Map<String, CompiledObject> outputs;
+        long start = System.nanoTime();
+
+        try {
+            outputs = backend == null ? javac(units, loader, collector) : compileWithBackend(units, loader);
+        } catch (CompilerException | RuntimeException e) {
+            metrics.recordFailure(backendName, System.nanoTime() - start);
+            throw e;
+        }
+
+        long bytes = 0;
+        for (CompiledObject output : outputs.values())
+            bytes += output.getSize();
+        metrics.recordCompilation(backendName, System.nanoTime() - start, bytes);
+
+        if (cacheKey != null)
+            bytecodeCache.put(cacheKey, outputs);
+
+        return outputs;
+    }
+
+    /**
+     * @return the key of the units in the bytecode cache, null if the cache is disabled, the units aren't all in
+     * memory sources, or they may use retained class files, which aren't part of the key
+     */
+    private String bytecodeCacheKey(List<? extends JavaFileObject> units, DynamicClassLoader loader) {
+
+        if (bytecodeCache == null)
+            return null;
+
+        // javac only resolves against the given loader, the backends fall back to the shared one
+        DynamicClassLoader resolving = backend == null || loader != null ? loader : dcl;
+        if (resolving != null && resolving.hasClassFiles())
+            return null;
+
+        List<SourceObject> sources = new ArrayList<>(units.size());
+
+        for (JavaFileObject unit : units) {
+            if (!(unit instanceof SourceObject))
+                return null;
+            sources.add((SourceObject) unit);
+        }
+
+        List<String> options = backend == null
+                               ? COMPILER_OPTIONS
+                               : Arrays.asList(backend.getClass().getName(),
+                                               backendSettings.getSourceVersion(),
+                                               backendSettings.getTargetVersion(),
+                                               String.valueOf(backendSettings.isDebug()));
+
+        return BytecodeCache.key(sources, options);
+    }
+
+    private Map<String, CompiledObject> javac(List<? extends JavaFileObject> units, DynamicClassLoader loader,
+                                              IncrementalBuild.Collector collector) throws CompilerException {
+
+        CompilationDiagnostics diagnostics = new CompilationDiagnostics(maxRetainedDiagnostics, diagnosticListener);
+        CompileEvent event = CompileEvent.begin("javac", units.stream().map(JavaFileObject::getName).toArray(String[]::new));
+        CompilerSession session = sessions.acquire();
+
+        try {
+            session.diagnostics = diagnostics;
+            FileManager fileManager = new FileManager(session.fileManager, loader, classPathIndex);
+            JavaCompiler.CompilationTask ctask = compiler.getTask(null, fileManager, diagnostics, COMPILER_OPTIONS, null, units);
+            CompilePhaseEvent.listen(ctask);
+            if (collector != null)
+                collector.attach(ctask);
+
+            if (!ctask.call()) {
+                event.complete(diagnostics.getErrorCount());
+                throw compilationFailed(diagnostics);
+            }
+
+            Map<String, CompiledObject> outputs = fileManager.getOutputs();
+
+            if (event.isEnabled()) {
+                for (JavaFileObject unit : units)
+                    if (unit instanceof SourceObject)
+                        event.sourceRead(((SourceObject) unit).getCharContent(true).length());
+                for (CompiledObject output : outputs.values())
+                    event.classWritten(output.getSize());
+            }
+            event.complete(0);
+
+            return outputs;
+        } finally {
+            session.diagnostics = null;
+            sessions.release(session);
+        }
+    }
+
+    /**
+     * Compiles the units with the compiler backend. Types are resolved through the given loader (or the shared one).
+     */
+    private Map<String, CompiledObject> compileWithBackend(List<? extends JavaFileObject> units, DynamicClassLoader loader) throws CompilerException {
 
-        dcl.addClass(new CompiledObject(name));
-        JavaCompiler.CompilationTask ctask = compiler.getTask(null, fileManager, diagnostics, null, null, Collections.singletonList(source));
+        CompilationDiagnostics diagnostics = new CompilationDiagnostics(maxRetainedDiagnostics, diagnosticListener);
+        MemoryResourceReader reader = new MemoryResourceReader();
+        String[] paths = new String[units.size()];
 
-        if (!ctask.call()) {
-            throw new CompilerException("Compilation failed !", diagnostics.getDiagnostics());
+        for (int i = 0; i < paths.length; i++) {
+            JavaFileObject unit = units.get(i);
+            paths[i] = unit instanceof SourceObject
+                       ? ((SourceObject) unit).getCanonicalName().replace('.', '/') + JavaFileObject.Kind.SOURCE.extension
+                       : unit.toUri().getPath().substring(1);
+
+            try {
+                reader.add(paths[i], unit.getCharContent(true).toString().getBytes(backendSettings.getSourceEncoding()));
+            } catch (IOException e) {
+                throw new CompilerException(e, null);
+            }
         }
 
-        return dcl.getObject(Utils.getCanonicalName(name));
+        CompiledObjectStore store = new CompiledObjectStore(loader);
+        CompilationResult result = backend.compile(paths, reader, store, loader != null ? loader : dcl, backendSettings);
+
+        for (CompilationProblem problem : result.getWarnings())
+            diagnostics.report(new ProblemDiagnostic(problem));
+        for (CompilationProblem problem : result.getErrors())
+            diagnostics.report(new ProblemDiagnostic(problem));
+
+        if (result.getErrors().length > 0)
+            throw compilationFailed(diagnostics);
+
+        return store.getOutputs();
+    }
+
+    /**
+     * Keeps the outputs of a compilation of sources in their loader, for the sources compiled later into it.
+     */
+    private Map<String, CompiledObject> retain(Map<String, CompiledObject> outputs, DynamicClassLoader loader) {
+
+        if (retainClassFiles)
+            outputs.values().forEach(loader::retain);
+        return outputs;
+    }
+
+    /**
+     * Retained outputs are still read after their definition, the other ones are handed over.
+     */
+    private Map<String, CompiledObject> retainOrHandOver(Map<String, CompiledObject> outputs, DynamicClassLoader loader) {
+
+        return retainClassFiles ? retain(outputs, loader) : handOver(outputs);
+    }
+
+    /**
+     * Marks outputs only referenced by their loader from now on, so their buffers are recycled once they're defined.
+     */
+    private static Map<String, CompiledObject> handOver(Map<String, CompiledObject> outputs) {
+
+        outputs.values().forEach(CompiledObject::handOver);
+        return outputs;
+    }
+
+    private static CompilerException compilationFailed(CompilationDiagnostics diagnostics) {
+
+        String dropped = diagnostics.getDroppedCount() > 0
+                         ? " (" + diagnostics.getDroppedCount() + " more diagnostics not retained)"
+                         : "";
+        return new CompilerException("Compilation failed !" + dropped, diagnostics.getDiagnostics());
+    }
+
+    /**
+     * Compile the specified sources on the async executor.
+     *
+     * @param sources a Map containing the classes and their qualified className.
+     * @return a future of the compiled classes, completed exceptionally with a {@link CompilerException} on failure
+     * @see #compile(Map)
+     */
+    public CompletableFuture<Map<String, CompiledObject>> compileAsync(Map<ClassName, String> sources) {
+
+        return submitAsync(() -> compile(sources));
+    }
+
+    /**
+     * Compile and load the specified sources on the async executor.
+     *
+     * @param sources a map containing the qualified class names associated with their sources.
+     * @return a future of the loaded classes, completed exceptionally with a {@link CompilerException} on failure
+     * @see #compileAndLoad(Map)
+     */
+    public CompletableFuture<Map<String, Class<?>>> compileAndLoadAsync(Map<ClassName, String> sources) {
+
+        return submitAsync(() -> compileAndLoad(sources));
+    }
+
+    /**
+     * Compile an expression on the async executor, completes immediately if the expression is already cached.
+     *
+     * @param expr the expression
+     * @param ctx  the evaluation context
+     * @return a future of the compiled expression, completed exceptionally with a {@link CompilerException} on failure
+     * @see #prepare(String, EvalContext)
+     */
+    public <T> CompletableFuture<CompiledExpression<T>> prepareAsync(String expr, EvalContext<T> ctx) {
+
+        return submitAsync(() -> prepare(expr, ctx));
+    }
+
+    public <T> CompletableFuture<T> evalAsync(String expr, Class<T> expectedType) {
+
+        return evalAsync(expr, new EvalContext<>(expectedType));
+    }
+
+    /**
+     * Compile and evaluate an expression on the async executor.
+     * <p>
+     * Cancelling the returned future before the task starts makes it skip its work. A task already running isn't
+     * interrupted, it completes but its result is discarded.
+     *
+     * @param expr the expression
+     * @param ctx  the evaluation context
+     * @param args the arguments, in the order their parameters were added to the context
+     * @return a future of the result, completed exceptionally with a {@link CompilerException} if the expression can't
+     * be compiled or an {@link InvocationTargetException} if it throws
+     * @see #evalExp(String, EvalContext, Object...)
+     */
+    public <T> CompletableFuture<T> evalAsync(String expr, EvalContext<T> ctx, Object... args) {
+
+        return submitAsync(() -> evalExp(expr, ctx, args));
+    }
+
+    private <T> CompletableFuture<T> submitAsync(Callable<T> callable) {
+
+        CancellableFuture<T> future = CancellableFuture.submit(asyncExecutor, callable);
+        asyncTasks.add(future);
+        future.whenComplete((result, e) -> asyncTasks.remove(future));
+        return future;
+    }
+
+    /**
+     * Stops the async executor of this compiler (unless it was provided in the settings), cancels the async tasks which
+     * haven't started yet and releases the javac sessions. Running compilations aren't interrupted, this waits up to
+     * {@value #CLOSE_TIMEOUT_SECONDS} seconds for them to complete. Loaded classes stay usable.
+     */
+    @Override
+    public void close() {
+
+        if (ownsAsyncExecutor)
+            asyncExecutor.shutdown();
+
+        for (CancellableFuture<?> task : asyncTasks)
+            task.cancelIfQueued();
+
+        if (ownsAsyncExecutor) {
+            try {
+                if (!asyncExecutor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+                    log.warn("Async compilations still running after " + CLOSE_TIMEOUT_SECONDS + " seconds");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (sessions != null)
+            sessions.close();
+
+        if (mbeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+            } catch (JMException e) {
+                log.warn("Unable to unregister " + mbeanName, e);
+            }
+        }
+
+        if (warmUpRecorder != null)
+            Utils.closeQuietly(warmUpRecorder);
+    }
+
+    private static final class AsyncThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+
+            Thread t = new Thread(r, "dyncompiler-async-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
     }
 
     public <T> T evalExp(String expr, Class<T> expectedType) throws CompilerException, InvocationTargetException {
@@ -169,9 +777,23 @@ public class DynCompiler {
         return evalExp(expr, new EvalContext<>(expectedType));
     }
 
-    public <T> T evalExp(String expr, EvalContext<T> ctx) throws CompilerException, InvocationTargetException {
+    /**
+     * Compile (or fetch from the cache) and evaluate an expression. With tiered evaluation enabled (see
+     * {@link DynCompilerSettings#setTieredThreshold(long)}), the expression is interpreted until it gets hot.
+     *
+     * @param expr the expression
+     * @param ctx  the evaluation context
+     * @param args the arguments, in the order their parameters were added to the context
+     * @return the result of the expression
+     * @throws CompilerException         if the expression can't be compiled
+     * @throws InvocationTargetException if the expression throws an exception
+     */
+    public <T> T evalExp(String expr, EvalContext<T> ctx, Object... args) throws CompilerException, InvocationTargetException {
 
-        return evalScript("return " + expr + ";", ctx);
+        if (tieredCache != null)
+            return prepareTiered(expr, ctx).eval(args);
+
+        return prepare(expr, ctx).eval(args);
     }
 
     public <T> T evalScript(String script, Class<T> returnType) throws CompilerException, InvocationTargetException {
@@ -179,11 +801,433 @@ public class DynCompiler {
         return evalScript(script, new EvalContext<>(returnType));
     }
 
-    public <T> T evalScript(String script, EvalContext<T> ctx) throws CompilerException, InvocationTargetException {
+    /**
+     * Compile (or fetch from the cache) and evaluate a script.
+     *
+     * @param script the body of the method to evaluate, must return a value of the eval type of the context
+     * @param ctx    the evaluation context
+     * @param args   the arguments, in the order their parameters were added to the context
+     * @return the value returned by the script
+     * @throws CompilerException         if the script can't be compiled
+     * @throws InvocationTargetException if the script throws an exception
+     */
+    public <T> T evalScript(String script, EvalContext<T> ctx, Object... args) throws CompilerException, InvocationTargetException {
+
+        return prepareScript(script, ctx).eval(args);
+    }
+
+    /**
+     * Compile an expression once so it can be evaluated any number of times.
+     *
+     * @param expr the expression
+     * @param ctx  the evaluation context
+     * @return the compiled expression
+     * @throws CompilerException if the expression can't be compiled
+     */
+    public <T> CompiledExpression<T> prepare(String expr, EvalContext<T> ctx) throws CompilerException {
+
+        return prepareScript("return " + expr + ";", ctx);
+    }
+
+    /**
+     * Prepare an expression for tiered evaluation : it's interpreted until it has been evaluated as many times as the
+     * tiered threshold of the settings (once if tiered evaluation is disabled), then compiled in the background.
+     * Expressions the interpreter doesn't support are compiled immediately.
+     *
+     * @param expr the expression
+     * @param ctx  the evaluation context
+     * @return the tiered expression, the same instance is returned while it stays cached
+     * @throws CompilerException if the expression can't be interpreted and can't be compiled
+     */
+    @SuppressWarnings("unchecked")
+    public <T> TieredExpression<T> prepareTiered(String expr, EvalContext<T> ctx) throws CompilerException {
+
+        EvalKey key = new EvalKey(expr, ctx);
+        BoundedCache<EvalKey, TieredExpression<?>> cache = tieredCache;
+
+        if (cache != null) {
+            TieredExpression<?> tiered = cache.get(key);
+            if (tiered != null)
+                return (TieredExpression<T>) tiered;
+        }
+
+        TieredExpression<T> tiered;
+        try {
+            InterpretedExpression interpreted = parseExpression(expr, ctx);
+            tiered = new TieredExpression<>(this, expr, ctx, interpreted, Math.max(tieredThreshold, 1));
+        } catch (UnsupportedExpressionException e) {
+            log.debug("Compiling " + expr + " : " + e.getMessage());
+            tiered = new TieredExpression<>(this, expr, ctx, prepare(expr, ctx));
+        }
+
+        // Racing threads may both parse it, the interpreter is cheap
+        if (cache != null)
+            cache.put(key, tiered);
+
+        return tiered;
+    }
+
+    /**
+     * Compile a script once so it can be evaluated any number of times.
+     *
+     * @param script the body of the method to evaluate, must return a value of the eval type of the context
+     * @param ctx    the evaluation context
+     * @return the compiled script
+     * @throws CompilerException if the script can't be compiled
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompiledExpression<T> prepareScript(String script, EvalContext<T> ctx) throws CompilerException {
+
+        EvalKey key = new EvalKey(script, ctx);
+        CompiledExpression<?> compiled = evalCache.get(key);
+
+        if (compiled != null)
+            return (CompiledExpression<T>) compiled;
+
+        CompletableFuture<CompiledExpression<?>> pending = new CompletableFuture<>();
+        CompletableFuture<CompiledExpression<?>> concurrent = pendingEvals.putIfAbsent(key, pending);
+
+        if (concurrent != null) {
+            try {
+                return (CompiledExpression<T>) concurrent.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof CompilerException)
+                    throw (CompilerException) e.getCause();
+                throw e;
+            }
+        }
+
+        try {
+            compiled = new CompiledExpression<>(getEvalMethod(compileScript(script, ctx)));
+            evalCache.put(key, compiled);
+            pending.complete(compiled);
+            record(key);
+            return (CompiledExpression<T>) compiled;
+        } catch (CompilerException | RuntimeException e) {
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            pendingEvals.remove(key);
+        }
+    }
+
+    private void record(EvalKey key) {
+
+        if (warmUpRecorder == null)
+            return;
+
+        try {
+            warmUpRecorder.record(key);
+        } catch (IOException e) {
+            log.warn("Unable to record " + key + " in the warm-up manifest", e);
+        }
+    }
+
+    /**
+     * Compile every script of a manifest recorded by a previous process (see
+     * {@link DynCompilerSettings#setWarmUpManifest(Path)}), so their first evaluations are served from the cache. Entries
+     * are compiled in parallel on the async executor, as many at a time as the compiler pool allows, and on the calling
+     * thread when the executor rejects a worker. This method blocks until all of them are compiled.
+     * <p>
+     * Entries that don't compile anymore are logged and skipped.
+     *
+     * @param manifest the manifest file
+     * @return the number of entries compiled
+     * @throws IOException if the manifest can't be read or is malformed
+     */
+    public int warmUp(Path manifest) throws IOException {
+
+        List<WarmUpManifest.Entry> entries = WarmUpManifest.read(manifest);
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger compiled = new AtomicInteger();
+        int workers = Math.min(entries.size(), parallelism);
+        Runnable worker = () -> {
+            int i;
+            while ((i = next.getAndIncrement()) < entries.size()) {
+                WarmUpManifest.Entry entry = entries.get(i);
+                try {
+                    prepareScript(entry.script, entry.ctx);
+                    compiled.incrementAndGet();
+                } catch (CompilerException | RuntimeException e) {
+                    log.warn("Unable to warm up " + entry.script, e);
+                }
+            }
+        };
+        List<CompletableFuture<Void>> running = new ArrayList<>(workers);
+
+        // A few workers draining the entries, rather than one task per entry that could overflow the executor queue
+        for (int w = 0; w < workers; w++) {
+            try {
+                running.add(CompletableFuture.runAsync(worker, asyncExecutor));
+            } catch (RejectedExecutionException e) {
+                // The executor is full, the caller drains the entries left
+                worker.run();
+                break;
+            }
+        }
+
+        try {
+            for (CompletableFuture<Void> w : running)
+                w.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Warm-up failed", e.getCause());
+        }
+
+        return compiled.get();
+    }
+
+    /**
+     * Compile a script and bind it to a functional interface, see {@link CompiledExpression#as(Class)}.
+     * Calls to the returned function don't go through reflection and can be inlined like hand written code.
+     *
+     * @param functionalInterface the interface to implement, eg. {@code ToDoubleFunction.class}
+     * @param body                the body of the method to evaluate, must return a value of the eval type of the context
+     * @param ctx                 the evaluation context, its parameters must match the ones of the interface method
+     * @return an implementation of the interface
+     * @throws CompilerException if the script can't be compiled
+     */
+    public <F> F compileFunction(Class<F> functionalInterface, String body, EvalContext<?> ctx) throws CompilerException {
+
+        return prepareScript(body, ctx).as(functionalInterface);
+    }
+
+    /**
+     * Compile an expression over double arguments returning a double, eg. {@code prepareDouble("qty * price", "qty", "price")}.
+     *
+     * @param expr   the expression
+     * @param params the names of the parameters, in the order the arguments are passed
+     * @return the compiled expression
+     * @throws CompilerException        if the expression can't be compiled
+     * @throws IllegalArgumentException if a parameter name is repeated
+     */
+    public DoubleExpression prepareDouble(String expr, String... params) throws CompilerException {
+
+        return prepareFunction(DoubleExpression.class, expr, params);
+    }
+
+    /**
+     * Compile an expression over long arguments returning a long.
+     *
+     * @param expr   the expression
+     * @param params the names of the parameters, in the order the arguments are passed
+     * @return the compiled expression
+     * @throws CompilerException        if the expression can't be compiled
+     * @throws IllegalArgumentException if a parameter name is repeated
+     */
+    public LongExpression prepareLong(String expr, String... params) throws CompilerException {
+
+        return prepareFunction(LongExpression.class, expr, params);
+    }
+
+    /**
+     * Compile an expression over int arguments returning an int.
+     *
+     * @param expr   the expression
+     * @param params the names of the parameters, in the order the arguments are passed
+     * @return the compiled expression
+     * @throws CompilerException        if the expression can't be compiled
+     * @throws IllegalArgumentException if a parameter name is repeated
+     */
+    public IntExpression prepareInt(String expr, String... params) throws CompilerException {
+
+        return prepareFunction(IntExpression.class, expr, params);
+    }
+
+    /**
+     * Compile a condition over double arguments, eg. {@code prepareBoolean("price > 10 && qty != 0", "price", "qty")}.
+     *
+     * @param expr   the expression
+     * @param params the names of the parameters, in the order the arguments are passed
+     * @return the compiled expression
+     * @throws CompilerException        if the expression can't be compiled
+     * @throws IllegalArgumentException if a parameter name is repeated
+     */
+    public BooleanExpression prepareBoolean(String expr, String... params) throws CompilerException {
+
+        return prepareFunction(BooleanExpression.class, expr, params);
+    }
+
+    /**
+     * Compile a condition over int arguments.
+     *
+     * @param expr   the expression
+     * @param params the names of the parameters, in the order the arguments are passed
+     * @return the compiled expression
+     * @throws CompilerException        if the expression can't be compiled
+     * @throws IllegalArgumentException if a parameter name is repeated
+     */
+    public IntBooleanExpression prepareIntBoolean(String expr, String... params) throws CompilerException {
+
+        return prepareFunction(IntBooleanExpression.class, expr, params);
+    }
+
+    /**
+     * Compile a condition over long arguments.
+     *
+     * @param expr   the expression
+     * @param params the names of the parameters, in the order the arguments are passed
+     * @return the compiled expression
+     * @throws CompilerException        if the expression can't be compiled
+     * @throws IllegalArgumentException if a parameter name is repeated
+     */
+    public LongBooleanExpression prepareLongBoolean(String expr, String... params) throws CompilerException {
+
+        return prepareFunction(LongBooleanExpression.class, expr, params);
+    }
+
+    /**
+     * Compile an expression to a functional interface with primitive parameters and result, eg.
+     * {@code prepareFunction(DoubleBinaryOperator.class, "qty * price", "qty", "price")}. The types of the parameters and of the
+     * result are the ones of the interface method, so int or long arguments keep their integer arithmetic, and nothing is boxed.
+     * The method either takes one argument per parameter, or a single primitive array holding all the arguments.
+     *
+     * @param functionalInterface the interface to implement
+     * @param expr                the expression
+     * @param params              the names of the parameters, in the order the arguments are passed
+     * @return an implementation of the interface
+     * @throws CompilerException        if the expression can't be compiled
+     * @throws IllegalArgumentException if the interface method doesn't match the parameters, uses non primitive types,
+     *                                  or if a parameter name is repeated
+     */
+    public <F> F prepareFunction(Class<F> functionalInterface, String expr, String... params) throws CompilerException {
+
+        Method sam = CompiledExpression.getFunctionalMethod(functionalInterface);
+        Class<?> evalType = sam.getReturnType();
+        Class<?>[] argTypes = sam.getParameterTypes();
+
+        if (!evalType.isPrimitive() || evalType == void.class)
+            throw new IllegalArgumentException(sam + " doesn't return a primitive");
+        if (new HashSet<>(Arrays.asList(params)).size() != params.length)
+            throw new IllegalArgumentException("Repeated parameter name in " + Arrays.toString(params));
+
+        if (argTypes.length == 1 && argTypes[0].isArray() && argTypes[0].getComponentType().isPrimitive())
+            return preparePacked(expr, evalType, argTypes[0].getComponentType(), params).as(functionalInterface);
+
+        if (argTypes.length != params.length)
+            throw new IllegalArgumentException(sam + " takes " + argTypes.length + " arguments but the expression has "
+                                               + params.length + " parameters");
+
+        EvalContext<?> ctx = new EvalContext<>(evalType);
+        for (int i = 0; i < params.length; i++) {
+            if (!argTypes[i].isPrimitive())
+                throw new IllegalArgumentException(sam + " has a non primitive parameter : " + argTypes[i].getName());
+            ctx.addParam(params[i], TypeName.get(argTypes[i]));
+        }
+
+        return prepare(expr, ctx).as(functionalInterface);
+    }
+
+    /**
+     * Compile an expression to a kernel evaluating it over columns of rows, eg. {@code compileKernel("qty * price", ctx)}
+     * with the {@code double} parameters {@code qty} and {@code price} computes a {@code double[]} from two {@code double[]}.
+     * A whole batch is a single call running a counted loop, instead of one call per row.
+     *
+     * @param expr the expression
+     * @param ctx  the evaluation context, its eval type and the types of its parameters must be primitives
+     * @return the kernel
+     * @throws CompilerException        if the expression can't be compiled
+     * @throws IllegalArgumentException if the eval type or a parameter isn't a primitive
+     */
+    public Kernel compileKernel(String expr, EvalContext<?> ctx) throws CompilerException {
+
+        if (!ctx.getEvalType().isPrimitive() || ctx.getEvalType() == void.class)
+            throw new IllegalArgumentException("The eval type of a kernel must be a primitive : " + ctx.getEvalType().getName());
+
+        String out = ctx.getEvalType().getName();
+        int columns = ctx.getParams().size();
+        StringBuilder script = new StringBuilder();
+
+        script.append("if ($columns.length != ").append(columns).append(")\n")
+                .append("    throw new IllegalArgumentException(\"Expected ").append(columns)
+                .append(" columns but got \" + $columns.length);\n");
+
+        // Checking the bounds once before the loop lets the JIT drop the checks of every row
+        int c = 0;
+        for (Map.Entry<String, TypeName> param : ctx.getParams().entrySet()) {
+            if (!param.getValue().isPrimitive())
+                throw new IllegalArgumentException("The parameter " + param.getKey() + " of a kernel must be a primitive : " + param.getValue());
+            script.append("final ").append(param.getValue()).append("[] $c").append(c)
+                    .append(" = (").append(param.getValue()).append("[]) $columns[").append(c).append("];\n")
+                    .append("java.util.Objects.checkFromToIndex($from, $to, $c").append(c).append(".length);\n");
+            c++;
+        }
+        script.append("final ").append(out).append("[] $out = (").append(out).append("[]) $output;\n")
+                .append("java.util.Objects.checkFromToIndex($from, $to, $out.length);\n")
+                .append("for (int $i = $from; $i < $to; $i++) {\n");
+
+        c = 0;
+        for (Map.Entry<String, TypeName> param : ctx.getParams().entrySet())
+            script.append("    final ").append(param.getValue()).append(' ').append(param.getKey())
+                    .append(" = $c").append(c++).append("[$i];\n");
+        script.append("    $out[$i] = ").append(expr).append(";\n}");
+
+        EvalContext<Void> kernelCtx = new EvalContext<>(void.class)
+                .addParam("$columns", ArrayTypeName.of(Object.class))
+                .addParam("$output", TypeName.OBJECT)
+                .addParam("$from", TypeName.INT)
+                .addParam("$to", TypeName.INT);
+        for (Class<?> imported : ctx.getImports())
+            kernelCtx.addImport(imported);
+
+        return prepareScript(script.toString(), kernelCtx).as(Kernel.class);
+    }
+
+    /**
+     * The generated method takes a single primitive array, checks its length and unpacks it into locals named after the
+     * parameters, so the expression can be bound to the array based primitive interfaces.
+     */
+    private CompiledExpression<?> preparePacked(String expr, Class<?> evalType, Class<?> argType, String[] params) throws CompilerException {
+
+        StringBuilder script = new StringBuilder();
+
+        script.append("if ($args.length != ").append(params.length).append(")\n")
+                .append("    throw new IllegalArgumentException(\"Expected ").append(params.length)
+                .append(" arguments but got \" + $args.length);\n");
+        for (int i = 0; i < params.length; i++)
+            script.append("final ").append(argType.getName()).append(' ').append(params[i])
+                    .append(" = $args[").append(i).append("];\n");
+        script.append("return ").append(expr).append(';');
+
+        return prepareScript(script.toString(), new EvalContext<>(evalType).addParam("$args", ArrayTypeName.of(argType)));
+    }
+
+    private static Method getEvalMethod(Class<?> clazz) throws CompilerException {
+
+        return getGeneratedMethod(clazz, "evalExp");
+    }
+
+    /**
+     * Generated classes hold a single method with a given name, whatever its parameters.
+     */
+    private static Method getGeneratedMethod(Class<?> clazz, String name) throws CompilerException {
+
+        for (Method m : clazz.getDeclaredMethods())
+            if (m.getName().equals(name))
+                return m;
+
+        throw new CompilerException("No " + name + " method in " + clazz.getName());
+    }
+
+    private static InterpretedExpression parseExpression(String expr, EvalContext<?> ctx) throws UnsupportedExpressionException {
+
+        for (Class<?> imported : ctx.getImports())
+            if (imported.getSimpleName().equals("Math"))
+                throw new UnsupportedExpressionException("Math is shadowed by " + imported.getName());
+
+        return ExpressionParser.parse(expr, ctx.getParams(), ctx.getEvalType());
+    }
+
+    private Class<?> compileScript(String script, EvalContext<?> ctx) throws CompilerException {
+
+        if (directBytecode) {
+            Class<?> emitted = emitExpression(script, ctx);
+            if (emitted != null)
+                return emitted;
+        }
 
         MethodSpec.Builder evalB = MethodSpec.methodBuilder("evalExp")
                 .addModifiers(Modifier.PUBLIC, Modifier.FINAL, Modifier.STATIC)
-                .addStatement(script)
+                .addCode("$L\n", script)
                 .returns(ctx.getEvalType());
         for (Map.Entry<String, TypeName> param : ctx.getParams().entrySet()) {
             evalB.addParameter(param.getValue(), param.getKey());
@@ -191,61 +1235,182 @@ public class DynCompiler {
 
         MethodSpec eval = evalB.build();
 
-        TypeSpec dummy = TypeSpec.classBuilder("Dummy")
-                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
-                .addMethod(eval)
-                .build();
+        // Gives CompiledExpression the access required to bind evalExp through the LambdaMetafactory
+        return compileGenerated("Eval", eval, lookupMethod());
+    }
 
-        JavaFile clazz = JavaFile.builder("", dummy)
-                .build();
+    /**
+     * Emits the class of a script returning a simple expression, without javac.
+     *
+     * @return the loaded class, null if the script isn't a simple expression
+     */
+    private Class<?> emitExpression(String script, EvalContext<?> ctx) throws CompilerException {
+
+        String trimmed = script.trim();
+
+        if (!trimmed.startsWith("return ") || !trimmed.endsWith(";"))
+            return null;
 
-        //System.out.println("[DynamicCompiler::evalExp] evaluating : " + dummy.toString());
+        String expr = trimmed.substring("return ".length(), trimmed.length() - 1);
+        long start = System.nanoTime();
+        CompileEvent event = CompileEvent.begin("bytecode", new String[]{expr});
+        String name = "Eval$" + Utils.sha256(script + '\n' + ctx.getEvalType().getName() + ctx.getParams()).substring(0, 16);
+        byte[] bytes;
 
         try {
-            return (T) compileAndLoad(ClassName.bestGuess("Dummy"), clazz.toString())
-                    .getDeclaredMethod("evalExp")
-                    .invoke(null);
-        } catch (NoSuchMethodException | IllegalAccessException e) {
-            e.printStackTrace();
+            bytes = BytecodeEmitter.emit(name, "evalExp", ctx.getEvalType(), parseExpression(expr, ctx), CompiledExpression.LOOKUP_METHOD);
+        } catch (UnsupportedExpressionException e) {
+            log.debug("Compiling " + expr + " : " + e.getMessage());
             return null;
         }
+
+        event.sourceRead(expr.length());
+        event.classWritten(bytes);
+        event.complete(0);
+        metrics.recordCompilation("bytecode", System.nanoTime() - start, bytes.length);
+
+        if (hiddenClasses)
+            return hiddenDefiner().define(bytes);
+
+        // Same as compileGenerated
+        Class<?> loaded = classLoaderGroupSize == 0 ? dcl.findLoaded(name) : null;
+
+        if (loaded != null)
+            return loaded;
+
+        DynamicClassLoader loader = nextLoader();
+        CompiledObject compiled = new CompiledObject(ClassName.get("", name), bytes);
+        // Nothing reads it after its definition, its buffer goes back to the pool then
+        compiled.handOver();
+        loader.addClass(compiled);
+        try {
+            return loader.loadClass(name);
+        } catch (ClassNotFoundException e) {
+            throw new CompilerException(e, null);
+        }
     }
 
-    public void runScript(String source) throws CompilerException, InvocationTargetException {
+    /**
+     * @return a method giving a full privilege lookup on the generated class
+     */
+    private static MethodSpec lookupMethod() {
 
-        MethodSpec run = MethodSpec.methodBuilder("runScript")
-                .addModifiers(Modifier.PUBLIC, Modifier.FINAL, Modifier.STATIC)
-                .addCode(source)
+        return MethodSpec.methodBuilder(CompiledExpression.LOOKUP_METHOD)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(MethodHandles.Lookup.class)
+                .addStatement("return $T.lookup()", MethodHandles.class)
                 .build();
+    }
 
-        TypeSpec dummy = TypeSpec.classBuilder("Dummy")
-                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
-                .addMethod(run)
-                .build();
+    /**
+     * The host of the hidden classes is a generated class of the shared loader, in the same (unnamed) package as the
+     * other generated classes.
+     */
+    private HiddenClassDefiner hiddenDefiner() throws CompilerException {
 
-        JavaFile clazz = JavaFile.builder("", dummy).build();
+        HiddenClassDefiner definer = hiddenDefiner;
+
+        if (definer == null) {
+            synchronized (this) {
+                definer = hiddenDefiner;
+                if (definer == null) {
+                    Class<?> host = compileAndLoad(dcl, "Host", lookupMethod());
+                    try {
+                        definer = new HiddenClassDefiner((MethodHandles.Lookup) host.getMethod(CompiledExpression.LOOKUP_METHOD).invoke(null));
+                    } catch (ReflectiveOperationException e) {
+                        throw new CompilerException(e, null);
+                    }
+                    hiddenDefiner = definer;
+                }
+            }
+        }
+
+        return definer;
+    }
+
+    /**
+     * Compiles and loads a class made of the given static methods. The class is named after the hash of its content so
+     * different scripts never collide, and a script compiled again is served by the already loaded class.
+     *
+     * @param prefix  the prefix of the generated class name
+     * @param methods the methods of the class
+     * @return the loaded class
+     */
+    private Class<?> compileGenerated(String prefix, MethodSpec... methods) throws CompilerException {
+
+        StringBuilder content = new StringBuilder();
+        for (MethodSpec m : methods)
+            content.append(m);
+
+        String name = prefix + '$' + Utils.sha256(content.toString()).substring(0, 16);
+
+        if (hiddenClasses) {
+            Map<String, CompiledObject> outputs = compile(Collections.singletonList(generatedSource(name, methods)), null);
+
+            // Nested classes (anonymous classes of a script) refer to the generated class by its name, it can't be hidden
+            if (outputs.size() == 1) {
+                CompiledObject output = outputs.get(name);
+                Class<?> hidden = hiddenDefiner().define(output.getBytes());
+                output.handOver();
+                output.defined();
+                return hidden;
+            }
+
+            DynamicClassLoader loader = nextLoader();
+            handOver(outputs).values().forEach(loader::addClass);
+            try {
+                return loader.loadClass(name);
+            } catch (ClassNotFoundException e) {
+                throw new CompilerException(e, null);
+            }
+        }
+
+        // Only the shared loader outlives a compilation, scoped loaders are never reused for the same script
+        Class<?> loaded = classLoaderGroupSize == 0 ? dcl.findLoaded(name) : null;
+
+        if (loaded != null)
+            return loaded;
+
+        return compileAndLoad(nextLoader(), name, methods);
+    }
+
+    private Class<?> compileAndLoad(DynamicClassLoader loader, String name, MethodSpec... methods) throws CompilerException {
+
+        handOver(compile(Collections.singletonList(generatedSource(name, methods)), loader));
 
         try {
-            compileAndLoad(ClassName.bestGuess("Dummy"), clazz.toString()).getDeclaredMethod("runScript").invoke(null);
-        } catch (IllegalAccessException | NoSuchMethodException e) {
-            e.printStackTrace();
+            return loader.loadClass(name);
+        } catch (ClassNotFoundException e) {
+            throw new CompilerException(e, null);
         }
     }
 
-    public Method compileMethod(MethodSpec signature) throws CompilerException {
+    private static SourceObject generatedSource(String name, MethodSpec... methods) {
 
-        TypeSpec dummy = TypeSpec.classBuilder("Dummy")
-                .addModifiers(Modifier.FINAL, Modifier.PUBLIC)
-                .addMethod(signature)
+        TypeSpec generated = TypeSpec.classBuilder(name)
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addMethods(Arrays.asList(methods))
                 .build();
 
-        JavaFile clazz = JavaFile.builder("", dummy).build();
+        return new SourceObject(ClassName.get("", name), JavaFile.builder("", generated).build().toString());
+    }
+
+    public void runScript(String source) throws CompilerException, InvocationTargetException {
+
+        MethodSpec run = MethodSpec.methodBuilder("runScript")
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL, Modifier.STATIC)
+                .addCode(source)
+                .build();
 
         try {
-            return compileAndLoad(ClassName.bestGuess("Dummy"), clazz.toString()).getDeclaredMethod(signature.name);
-        } catch (NoSuchMethodException e) {
+            compileGenerated("Script", run).getDeclaredMethod("runScript").invoke(null);
+        } catch (IllegalAccessException | NoSuchMethodException e) {
             e.printStackTrace();
-            return null;
         }
     }
+
+    public Method compileMethod(MethodSpec signature) throws CompilerException {
+
+        return getGeneratedMethod(compileGenerated("Method", signature), signature.name);
+    }
 }
\ No newline at end of file
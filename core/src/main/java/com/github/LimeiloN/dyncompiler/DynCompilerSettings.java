@@ -0,0 +1,507 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.github.LimeiloN.dyncompiler;
+
+import com.github.LimeiloN.dyncompiler.compilers.JavaCompiler;
+import com.github.LimeiloN.dyncompiler.compilers.JavaCompilerSettings;
+
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaFileObject;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Settings used to configure a {@link DynCompiler} instance.
+ * <p>
+ * Settings are read once when the compiler is built, changing them afterwards has no effect on existing compilers.
+ */
+public class DynCompilerSettings {
+
+    private long evalCacheMaximumSize = 1024;
+    private long evalCacheMaximumWeight = 1024 * 1024;
+    private int compilerPoolSize = Runtime.getRuntime().availableProcessors();
+    private int asyncThreads = Runtime.getRuntime().availableProcessors();
+    private int asyncQueueCapacity = 1024;
+    private ExecutorService asyncExecutor;
+    private int maxRetainedDiagnostics = 100;
+    private DiagnosticListener<? super JavaFileObject> diagnosticListener;
+    private int classLoaderGroupSize = 0;
+    private boolean hiddenClasses = false;
+    private Path bytecodeCacheDirectory;
+    private Path warmUpManifest;
+    private JavaCompiler compilerBackend;
+    private JavaCompilerSettings compilerBackendSettings;
+    private long tieredThreshold = 0;
+    private String mbeanName;
+    private boolean directBytecode = false;
+    private boolean retainClassFiles = false;
+    private boolean classPathIndex = true;
+
+    public DynCompilerSettings() {
+
+    }
+
+    public DynCompilerSettings(DynCompilerSettings settings) {
+
+        this.evalCacheMaximumSize = settings.evalCacheMaximumSize;
+        this.evalCacheMaximumWeight = settings.evalCacheMaximumWeight;
+        this.compilerPoolSize = settings.compilerPoolSize;
+        this.asyncThreads = settings.asyncThreads;
+        this.asyncQueueCapacity = settings.asyncQueueCapacity;
+        this.asyncExecutor = settings.asyncExecutor;
+        this.maxRetainedDiagnostics = settings.maxRetainedDiagnostics;
+        this.diagnosticListener = settings.diagnosticListener;
+        this.classLoaderGroupSize = settings.classLoaderGroupSize;
+        this.hiddenClasses = settings.hiddenClasses;
+        this.bytecodeCacheDirectory = settings.bytecodeCacheDirectory;
+        this.warmUpManifest = settings.warmUpManifest;
+        this.compilerBackend = settings.compilerBackend;
+        this.compilerBackendSettings = settings.compilerBackendSettings;
+        this.tieredThreshold = settings.tieredThreshold;
+        this.mbeanName = settings.mbeanName;
+        this.directBytecode = settings.directBytecode;
+        this.retainClassFiles = settings.retainClassFiles;
+        this.classPathIndex = settings.classPathIndex;
+    }
+
+    /**
+     * @return the maximum number of compiled expressions and scripts kept in the eval cache
+     */
+    public long getEvalCacheMaximumSize() {
+
+        return evalCacheMaximumSize;
+    }
+
+    /**
+     * Set the maximum number of compiled expressions and scripts kept in the eval cache. 0 disables the cache.
+     *
+     * @param evalCacheMaximumSize the maximum number of entries
+     * @return this
+     */
+    public DynCompilerSettings setEvalCacheMaximumSize(long evalCacheMaximumSize) {
+
+        this.evalCacheMaximumSize = evalCacheMaximumSize;
+        return this;
+    }
+
+    /**
+     * @return the maximum total weight of the eval cache, an entry weights as much as the length of its normalized script
+     */
+    public long getEvalCacheMaximumWeight() {
+
+        return evalCacheMaximumWeight;
+    }
+
+    /**
+     * Set the maximum total weight of the eval cache. An entry weights as much as the length of its normalized script.
+     *
+     * @param evalCacheMaximumWeight the maximum total weight
+     * @return this
+     */
+    public DynCompilerSettings setEvalCacheMaximumWeight(long evalCacheMaximumWeight) {
+
+        this.evalCacheMaximumWeight = evalCacheMaximumWeight;
+        return this;
+    }
+
+    /**
+     * @return the maximum number of javac sessions, hence of compilations running in parallel
+     */
+    public int getCompilerPoolSize() {
+
+        return compilerPoolSize;
+    }
+
+    /**
+     * Set the maximum number of javac sessions, hence of compilations running in parallel. Defaults to the number of
+     * available processors.
+     *
+     * @param compilerPoolSize the maximum number of sessions, at least 1
+     * @return this
+     */
+    public DynCompilerSettings setCompilerPoolSize(int compilerPoolSize) {
+
+        this.compilerPoolSize = compilerPoolSize;
+        return this;
+    }
+
+    /**
+     * @return the number of threads running asynchronous compilations
+     */
+    public int getAsyncThreads() {
+
+        return asyncThreads;
+    }
+
+    /**
+     * Set the number of threads of the executor running asynchronous compilations and evaluations. Ignored if an
+     * executor is provided with {@link #setAsyncExecutor(ExecutorService)}.
+     *
+     * @param asyncThreads the number of threads, at least 1
+     * @return this
+     */
+    public DynCompilerSettings setAsyncThreads(int asyncThreads) {
+
+        this.asyncThreads = asyncThreads;
+        return this;
+    }
+
+    /**
+     * @return the maximum number of asynchronous tasks waiting for a thread
+     */
+    public int getAsyncQueueCapacity() {
+
+        return asyncQueueCapacity;
+    }
+
+    /**
+     * Set the maximum number of asynchronous tasks waiting for a thread, further tasks are rejected (their future
+     * completes with a {@link java.util.concurrent.RejectedExecutionException}). Ignored if an executor is provided
+     * with {@link #setAsyncExecutor(ExecutorService)}.
+     *
+     * @param asyncQueueCapacity the capacity of the queue, at least 1
+     * @return this
+     */
+    public DynCompilerSettings setAsyncQueueCapacity(int asyncQueueCapacity) {
+
+        this.asyncQueueCapacity = asyncQueueCapacity;
+        return this;
+    }
+
+    /**
+     * @return the executor running asynchronous tasks, null if the compiler creates its own
+     */
+    public ExecutorService getAsyncExecutor() {
+
+        return asyncExecutor;
+    }
+
+    /**
+     * Run the asynchronous compilations and evaluations on the given executor instead of a dedicated one.
+     * The executor is not shut down when the compiler is closed.
+     *
+     * @param asyncExecutor the executor
+     * @return this
+     */
+    public DynCompilerSettings setAsyncExecutor(ExecutorService asyncExecutor) {
+
+        this.asyncExecutor = asyncExecutor;
+        return this;
+    }
+
+    /**
+     * @return the maximum number of diagnostics kept per compilation
+     */
+    public int getMaxRetainedDiagnostics() {
+
+        return maxRetainedDiagnostics;
+    }
+
+    /**
+     * Set the maximum number of diagnostics kept per compilation and exposed by {@link CompilerException#getDiagnostics()}.
+     * Errors are kept in priority over warnings. Diagnostics are never kept once the compilation is over.
+     *
+     * @param maxRetainedDiagnostics the maximum number of diagnostics, 0 to keep none
+     * @return this
+     */
+    public DynCompilerSettings setMaxRetainedDiagnostics(int maxRetainedDiagnostics) {
+
+        this.maxRetainedDiagnostics = maxRetainedDiagnostics;
+        return this;
+    }
+
+    /**
+     * @return the listener notified of every diagnostic, may be null
+     */
+    public DiagnosticListener<? super JavaFileObject> getDiagnosticListener() {
+
+        return diagnosticListener;
+    }
+
+    /**
+     * Stream every diagnostic (including the ones not retained) to a listener as javac reports them.
+     * The listener is called from the compiling threads, possibly concurrently.
+     *
+     * @param diagnosticListener the listener, null to disable
+     * @return this
+     */
+    public DynCompilerSettings setDiagnosticListener(DiagnosticListener<? super JavaFileObject> diagnosticListener) {
+
+        this.diagnosticListener = diagnosticListener;
+        return this;
+    }
+
+    /**
+     * @return the number of compilations sharing a class loader, 0 if all the compilations share the same loader
+     */
+    public int getClassLoaderGroupSize() {
+
+        return classLoaderGroupSize;
+    }
+
+    /**
+     * Scope class loaders to groups of compilations. With a group size of N, every N compilations get their own child
+     * class loader, which is referenced only by the classes it defines : once the handles (classes, compiled expressions,
+     * functions) of a group are dropped and evicted from the eval cache, its classes can be unloaded.
+     * <p>
+     * Classes of a group can't see the classes of another group. With the default of 0, every compilation shares the
+     * same loader and classes are never unloaded.
+     *
+     * @param classLoaderGroupSize the number of compilations per class loader, 1 for a loader per compilation
+     * @return this
+     */
+    public DynCompilerSettings setClassLoaderGroupSize(int classLoaderGroupSize) {
+
+        this.classLoaderGroupSize = classLoaderGroupSize;
+        return this;
+    }
+
+    /**
+     * @return true if the classes generated for evaluations are defined as hidden classes when the JDK supports it
+     */
+    public boolean isHiddenClasses() {
+
+        return hiddenClasses;
+    }
+
+    /**
+     * Define the classes generated by the eval, run and compileMethod methods as hidden classes (JDK 15+). Hidden
+     * classes aren't registered in any class loader and are unloaded as soon as their handles are unreachable, which
+     * suits workloads evaluating lots of different expressions. This setting is ignored on older JDKs.
+     *
+     * @param hiddenClasses true to define generated classes as hidden classes
+     * @return this
+     */
+    public DynCompilerSettings setHiddenClasses(boolean hiddenClasses) {
+
+        this.hiddenClasses = hiddenClasses;
+        return this;
+    }
+
+    /**
+     * @return the directory of the bytecode cache, null if disabled
+     */
+    public Path getBytecodeCacheDirectory() {
+
+        return bytecodeCacheDirectory;
+    }
+
+    /**
+     * Persist compiled classes in a directory, keyed by a hash of their sources, the compiler options and the JDK, so
+     * compiling the same sources again (typically after a restart) reads the classes from disk without running javac.
+     * The directory can be shared between compilers and processes.
+     *
+     * @param bytecodeCacheDirectory the cache directory, created if needed, null to disable the cache
+     * @return this
+     */
+    public DynCompilerSettings setBytecodeCacheDirectory(Path bytecodeCacheDirectory) {
+
+        this.bytecodeCacheDirectory = bytecodeCacheDirectory;
+        return this;
+    }
+
+    /**
+     * @return the manifest recording the compiled scripts, null if disabled
+     */
+    public Path getWarmUpManifest() {
+
+        return warmUpManifest;
+    }
+
+    /**
+     * Record every distinct script or expression compiled for an evaluation in a manifest file, to be given to
+     * {@link DynCompiler#warmUp(Path)} at the next startup. Entries are appended, an existing manifest is kept.
+     *
+     * @param warmUpManifest the manifest file, null to disable recording
+     * @return this
+     */
+    public DynCompilerSettings setWarmUpManifest(Path warmUpManifest) {
+
+        this.warmUpManifest = warmUpManifest;
+        return this;
+    }
+
+    /**
+     * @return the compiler used instead of the system javac, null to use javac
+     */
+    public JavaCompiler getCompilerBackend() {
+
+        return compilerBackend;
+    }
+
+    /**
+     * Compile with another compiler than the system javac, like ECJ or Janino. A DynCompiler with a backend doesn't
+     * need the platform to provide a compiler, so it also works on a JRE. The backend must support concurrent
+     * compilations.
+     *
+     * @param compilerBackend the compiler to use, null to use javac
+     * @return this
+     */
+    public DynCompilerSettings setCompilerBackend(JavaCompiler compilerBackend) {
+
+        this.compilerBackend = compilerBackend;
+        return this;
+    }
+
+    /**
+     * @return the settings given to the compiler backend, null for its default settings with a Java 11 language level
+     */
+    public JavaCompilerSettings getCompilerBackendSettings() {
+
+        return compilerBackendSettings;
+    }
+
+    /**
+     * @param compilerBackendSettings the settings given to the compiler backend, null for its default settings with a
+     *                                Java 11 language level
+     * @return this
+     */
+    public DynCompilerSettings setCompilerBackendSettings(JavaCompilerSettings compilerBackendSettings) {
+
+        this.compilerBackendSettings = compilerBackendSettings;
+        return this;
+    }
+
+    /**
+     * @return the number of interpreted evaluations of an expression before it's compiled, 0 if tiered evaluation is
+     * disabled
+     */
+    public long getTieredThreshold() {
+
+        return tieredThreshold;
+    }
+
+    /**
+     * Enable tiered evaluation for the evalExp methods : expressions are interpreted until they have been evaluated
+     * the given number of times, then compiled in the background (see {@link TieredExpression}). One-off expressions
+     * never pay for a compilation. With the default of 0, expressions are compiled on their first evaluation.
+     *
+     * @param tieredThreshold the number of interpreted evaluations before compiling, 0 to disable
+     * @return this
+     */
+    public DynCompilerSettings setTieredThreshold(long tieredThreshold) {
+
+        this.tieredThreshold = tieredThreshold;
+        return this;
+    }
+
+    /**
+     * @return the name of the MBean of the compiler, null if it isn't registered
+     */
+    public String getMBeanName() {
+
+        return mbeanName;
+    }
+
+    /**
+     * Register a {@link com.github.LimeiloN.dyncompiler.metrics.DynCompilerMXBean} exposing the metrics of the
+     * compiler on the platform MBean server, as {@code com.github.LimeiloN.dyncompiler:type=DynCompiler,name=<name>}.
+     * It's unregistered when the compiler is closed. The same metrics are available through
+     * {@link DynCompiler#getMetrics()} either way.
+     *
+     * @param mbeanName the name of the MBean, unique among the compilers of the process, null to not register it
+     * @return this
+     */
+    public DynCompilerSettings setMBeanName(String mbeanName) {
+
+        this.mbeanName = mbeanName;
+        return this;
+    }
+
+    /**
+     * @return true if the bytecode of simple expressions is emitted directly, without javac
+     */
+    public boolean isDirectBytecode() {
+
+        return directBytecode;
+    }
+
+    /**
+     * Emit the class of simple expressions (arithmetic, comparisons, boolean logic and Math functions over int, long,
+     * double and boolean parameters) directly instead of compiling them with javac, which takes microseconds instead
+     * of milliseconds. Other expressions and scripts are still compiled. These expressions bypass the compiler backend
+     * (see {@link #setCompilerBackend(JavaCompiler)}). Disabled by default.
+     *
+     * @param directBytecode true to emit the bytecode of simple expressions directly
+     * @return this
+     */
+    public DynCompilerSettings setDirectBytecode(boolean directBytecode) {
+
+        this.directBytecode = directBytecode;
+        return this;
+    }
+
+    /**
+     * @return true if the classes compiled from sources are kept for the sources compiled later
+     */
+    public boolean isRetainClassFiles() {
+
+        return retainClassFiles;
+    }
+
+    /**
+     * Keep the class files compiled by {@link DynCompiler#compile(java.util.Map)} and
+     * {@link DynCompiler#compileAndLoad(java.util.Map)} (and their single class variants) in their class loader, so
+     * the sources compiled later into the same loader can use these classes without compiling them again. Classes of
+     * scoped loaders (see {@link #setClassLoaderGroupSize(int)}) are only visible to the compilations of their group.
+     * The class files of expressions and scripts are never kept.
+     * <p>
+     * The bytes of every retained class stay on the heap as long as its loader, outside of any cache bound, and their
+     * buffers are never given back to the pool. The compilations which may use them also bypass the bytecode cache (see
+     * {@link #setBytecodeCacheDirectory(Path)}). Only enable it when the compiled sources do depend on each other.
+     * Disabled by default.
+     *
+     * @param retainClassFiles true to keep the compiled class files
+     * @return this
+     */
+    public DynCompilerSettings setRetainClassFiles(boolean retainClassFiles) {
+
+        this.retainClassFiles = retainClassFiles;
+        return this;
+    }
+
+    /**
+     * @return true if the listings of the class path packages are shared between the javac tasks
+     */
+    public boolean isClassPathIndex() {
+
+        return classPathIndex;
+    }
+
+    /**
+     * Share the listings of the platform and class path packages between the javac tasks, so the jars and directories
+     * are scanned once instead of once per task. The listings are dropped when the class path changes, and by
+     * {@link DynCompiler#invalidateClassPathIndex()}. Enabled by default, ignored with a compiler backend.
+     *
+     * @param classPathIndex true to share the listings
+     * @return this
+     */
+    public DynCompilerSettings setClassPathIndex(boolean classPathIndex) {
+
+        this.classPathIndex = classPathIndex;
+        return this;
+    }
+}
@@ -25,19 +25,41 @@
 
 package com.github.LimeiloN.dyncompiler;
 
+import com.github.LimeiloN.dyncompiler.events.DefineClassEvent;
+import com.github.LimeiloN.dyncompiler.internal.Utils;
+import com.github.LimeiloN.dyncompiler.metrics.ClassLoadingMetrics;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Loads the classes of compiled objects. The loader is parallel capable : classes of different names are loaded
+ * concurrently, and loading a class of a given name is serialized on a lock of that name.
+ */
 public class DynamicClassLoader extends ClassLoader {
 
+    static {
+        registerAsParallelCapable();
+    }
+
     // Objects are indexed on their qualified (or canonical) name
-    private Map<String, CompiledObject> compiledObjs;
+    private final Map<String, CompiledObject> compiledObjs;
+    // Class files kept for later compilations, by package then binary name
+    private final Map<String, Map<String, CompiledObject>> classFiles;
+    private final ClassLoadingMetrics.LoaderMetrics metrics = ClassLoadingMetrics.track(this);
 
     public DynamicClassLoader(ClassLoader classLoader) {
 
         super(classLoader);
-        this.compiledObjs = new HashMap<>();
+        this.compiledObjs = new ConcurrentHashMap<>();
+        this.classFiles = new ConcurrentHashMap<>();
     }
 
     public void addClass(CompiledObject co) {
@@ -50,6 +72,101 @@ public class DynamicClassLoader extends ClassLoader {
         return compiledObjs.get(qname);
     }
 
+    /**
+     * Keeps the class file of a compiled object, so the sources compiled later into this loader or its children can
+     * use the class without compiling it again.
+     *
+     * @param co the compiled object, its buffer must not be recycled
+     */
+    public void retain(CompiledObject co) {
+
+        classFiles.computeIfAbsent(co.getClassName().packageName(), p -> new ConcurrentHashMap<>())
+                .put(co.getCanonicalName(), co);
+    }
+
+    /**
+     * @param qname the binary name of a class
+     * @return the class file retained by this loader or its parents, null if there's none
+     */
+    public CompiledObject getClassFile(String qname) {
+
+        for (DynamicClassLoader loader = this; loader != null; loader = loader.dynamicParent()) {
+            Map<String, CompiledObject> pkg = loader.classFiles.get(Utils.getPackage(qname));
+            CompiledObject co = pkg == null ? null : pkg.get(qname);
+
+            if (co != null)
+                return co;
+        }
+
+        return null;
+    }
+
+    /**
+     * @param packageName the name of a package
+     * @param recurse     true to include the subpackages
+     * @return the class files of the package retained by this loader or its parents
+     */
+    public List<CompiledObject> listClassFiles(String packageName, boolean recurse) {
+
+        List<CompiledObject> listed = new ArrayList<>();
+        String prefix = packageName + '.';
+
+        for (DynamicClassLoader loader = this; loader != null; loader = loader.dynamicParent()) {
+            if (!recurse) {
+                Map<String, CompiledObject> pkg = loader.classFiles.get(packageName);
+                if (pkg != null)
+                    listed.addAll(pkg.values());
+                continue;
+            }
+            for (Map.Entry<String, Map<String, CompiledObject>> pkg : loader.classFiles.entrySet())
+                if (pkg.getKey().equals(packageName) || packageName.isEmpty() || pkg.getKey().startsWith(prefix))
+                    listed.addAll(pkg.getValue().values());
+        }
+
+        return listed;
+    }
+
+    /**
+     * @return true if this loader or its parents retain class files
+     */
+    public boolean hasClassFiles() {
+
+        for (DynamicClassLoader loader = this; loader != null; loader = loader.dynamicParent())
+            if (!loader.classFiles.isEmpty())
+                return true;
+
+        return false;
+    }
+
+    private DynamicClassLoader dynamicParent() {
+
+        return getParent() instanceof DynamicClassLoader ? (DynamicClassLoader) getParent() : null;
+    }
+
+    /**
+     * Also serves the retained class files, for the compiler backends that read classes as resources.
+     */
+    @Override
+    public InputStream getResourceAsStream(String name) {
+
+        InputStream in = super.getResourceAsStream(name);
+
+        if (in != null || !name.endsWith(".class"))
+            return in;
+
+        CompiledObject co = getClassFile(Utils.convertResourceToClassName(name));
+        return co == null ? null : co.openInputStream();
+    }
+
+    /**
+     * @param qname the qualified name of a class
+     * @return the class if it was already defined by this loader, null otherwise
+     */
+    public Class<?> findLoaded(String qname) {
+
+        return findLoadedClass(qname);
+    }
+
     public Map<String, CompiledObject> getObjects() {
 
         return new HashMap<>(compiledObjs);
@@ -78,15 +195,33 @@ public class DynamicClassLoader extends ClassLoader {
     @Override
     public Class<?> findClass(String qname) throws ClassNotFoundException {
 
-        System.out.println("[DynamicClassLoader::findClass] " + qname);
         CompiledObject compiled = compiledObjs.get(qname);
 
         if (compiled == null) {
-            return super.findClass(qname);
+            // The bytes are dropped once the class is defined, which happens before
+            Class<?> loaded = findLoadedClass(qname);
+            return loaded != null ? loaded : super.findClass(qname);
         }
 
-        compiledObjs.remove(qname);
-        byte[] data = compiled.getBytes();
-        return defineClass(qname, data, 0, data.length);
+        // loadClass already holds the lock, but findClass is public and could race it into a duplicate definition
+        synchronized (getClassLoadingLock(qname)) {
+            Class<?> loaded = findLoadedClass(qname);
+
+            if (loaded != null)
+                return loaded;
+
+            // Defined from the buffer the class file was written to, without copy
+            ByteBuffer data = compiled.getBuffer();
+            int length = data.remaining();
+            DefineClassEvent event = new DefineClassEvent();
+            event.begin();
+            Class<?> cls = defineClass(qname, data, (ProtectionDomain) null);
+            event.defined(qname, length, this, false);
+            metrics.classDefined();
+            // The bytes aren't needed anymore once the class is defined
+            compiledObjs.remove(qname, compiled);
+            compiled.defined();
+            return cls;
+        }
     }
 }
@@ -28,7 +28,7 @@ package com.github.LimeiloN.dyncompiler;
 import com.squareup.javapoet.TypeName;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -41,7 +41,7 @@ public class EvalContext<T> {
     public EvalContext(Class<T> evalType) {
 
         this.imports = new ArrayList<>();
-        this.params = new HashMap<>();
+        this.params = new LinkedHashMap<>();
         this.evalType = evalType;
     }
 
@@ -56,6 +56,13 @@ public class EvalContext<T> {
         return imports;
     }
 
+    /**
+     * Add a parameter to the evaluated expression. Arguments are passed in the order their parameters were added.
+     *
+     * @param name  the name of the parameter, as used in the expression
+     * @param param the type of the parameter
+     * @return this
+     */
     public EvalContext<T> addParam(String name, TypeName param) {
 
         params.put(name, param);
@@ -0,0 +1,89 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.github.LimeiloN.dyncompiler;
+
+import com.github.LimeiloN.dyncompiler.internal.Utils;
+import com.squareup.javapoet.TypeName;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Identifies a compiled script : its normalized source, its return type and the name and type of its parameters.
+ */
+final class EvalKey {
+
+    final String script;
+    final Class<?> evalType;
+    final List<String> paramNames;
+    final List<TypeName> paramTypes;
+    private final int hash;
+
+    EvalKey(String script, EvalContext<?> ctx) {
+
+        this.script = Utils.normalizeScript(script);
+        this.evalType = ctx.getEvalType();
+        this.paramNames = new ArrayList<>(ctx.getParams().size());
+        this.paramTypes = new ArrayList<>(ctx.getParams().size());
+
+        for (Map.Entry<String, TypeName> param : ctx.getParams().entrySet()) {
+            paramNames.add(param.getKey());
+            paramTypes.add(param.getValue());
+        }
+
+        this.hash = Objects.hash(this.script, evalType, paramNames, paramTypes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o)
+            return true;
+        if (!(o instanceof EvalKey))
+            return false;
+
+        EvalKey other = (EvalKey) o;
+        return hash == other.hash
+               && script.equals(other.script)
+               && evalType.equals(other.evalType)
+               && paramNames.equals(other.paramNames)
+               && paramTypes.equals(other.paramTypes);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+
+        return evalType.getName() + " (" + paramTypes + " " + paramNames + ") : " + script;
+    }
+}
@@ -25,16 +25,28 @@
 
 package com.github.LimeiloN.dyncompiler;
 
+import com.github.LimeiloN.dyncompiler.internal.Utils;
+import com.squareup.javapoet.ClassName;
+
 import javax.tools.FileObject;
 import javax.tools.ForwardingJavaFileManager;
 import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class FileManager extends ForwardingJavaFileManager<JavaFileManager> {
 
     private DynamicClassLoader classLoader;
-    //private Map<String, SourceObject> sources;
+    // Classes written by the compilation task using this file manager
+    private Map<String, CompiledObject> outputs;
+    // Listings shared with the other tasks, null to always list through the delegate
+    private ClassPathIndex index;
 
     /**
      * Creates a new instance of ForwardingJavaFileManager.
@@ -43,26 +55,96 @@ public class FileManager extends ForwardingJavaFileManager<JavaFileManager> {
      */
     public FileManager(JavaFileManager fileManager, DynamicClassLoader cloader) {
 
+        this(fileManager, cloader, null);
+    }
+
+    FileManager(JavaFileManager fileManager, DynamicClassLoader cloader, ClassPathIndex index) {
+
         super(fileManager);
         this.classLoader = cloader;
+        this.outputs = new HashMap<>();
+        this.index = index;
+
+        if (index != null)
+            index.validate(fileManager);
+    }
+
+    /**
+     * Adds the class files retained by the loader to the class path, so sources can use classes compiled before
+     * without their sources.
+     */
+    @Override
+    public Iterable<JavaFileObject> list(Location location, String packageName, Set<JavaFileObject.Kind> kinds, boolean recurse) throws IOException {
+
+        Iterable<JavaFileObject> listed = index != null && ClassPathIndex.isIndexed(location)
+                                          ? index.list(fileManager, location, packageName, kinds, recurse)
+                                          : super.list(location, packageName, kinds, recurse);
+
+        if (!servesClassFiles(location) || !kinds.contains(JavaFileObject.Kind.CLASS))
+            return listed;
+
+        List<CompiledObject> retained = classLoader.listClassFiles(packageName, recurse);
+
+        if (retained.isEmpty())
+            return listed;
+
+        List<JavaFileObject> all = new ArrayList<>(retained);
+        listed.forEach(all::add);
+        return all;
+    }
+
+    @Override
+    public String inferBinaryName(Location location, JavaFileObject file) {
+
+        if (file instanceof CompiledObject)
+            return ((CompiledObject) file).getCanonicalName();
+
+        return super.inferBinaryName(location, file);
     }
 
-    /*
     @Override
-    public JavaFileObject getFileForInput(Location location, String packageName, String relativeName) {
+    public JavaFileObject getJavaFileForInput(Location location, String qname, JavaFileObject.Kind kind) throws IOException {
+
+        if (servesClassFiles(location) && kind == JavaFileObject.Kind.CLASS) {
+            CompiledObject co = classLoader.getClassFile(qname);
+            if (co != null)
+                return co;
+        }
+
+        return super.getJavaFileForInput(location, qname, kind);
+    }
+
+    @Override
+    public boolean isSameFile(FileObject a, FileObject b) {
+
+        if (a instanceof CompiledObject || b instanceof CompiledObject)
+            return a == b;
+
+        return super.isSameFile(a, b);
+    }
 
-        System.out.println("[FileManager::getFileForInput] " + location + "; " + packageName + "; " + relativeName);
-        return sources.get(packageName.replace("\\.", File.pathSeparator) + relativeName);
+    /**
+     * javac looks classes up in the class path, the class output holds them as well.
+     */
+    private boolean servesClassFiles(Location location) {
+
+        return classLoader != null
+               && (location == StandardLocation.CLASS_PATH || location == StandardLocation.CLASS_OUTPUT);
     }
-    */
 
     @Override
     public JavaFileObject getJavaFileForOutput(Location location, String qname, JavaFileObject.Kind kind, FileObject outputFile) throws IOException {
 
-        //System.out.println("[FileManager::getFileForOutput] " + location + "; " + className + "; " + kind + "; " + outputFile);
-        if (kind == JavaFileObject.Kind.CLASS)
-            return classLoader.getObject(qname);
-        else
+        if (kind == JavaFileObject.Kind.CLASS) {
+            // qname is a binary name, nested classes are simple names containing a '$'
+            String[] splitted = Utils.splitQName(qname);
+            CompiledObject co = new CompiledObject(ClassName.get(splitted[0], splitted[1]));
+            outputs.put(qname, co);
+            // Without a loader, the caller defines the classes itself
+            if (classLoader != null)
+                classLoader.addClass(co);
+            return co;
+        } else
             return super.getJavaFileForOutput(location, qname, kind, outputFile);
     }
 
@@ -71,4 +153,12 @@ public class FileManager extends ForwardingJavaFileManager<JavaFileManager> {
 
         return classLoader;
     }
+
+    /**
+     * @return the classes written through this file manager, indexed by their qualified name
+     */
+    public Map<String, CompiledObject> getOutputs() {
+
+        return outputs;
+    }
 }
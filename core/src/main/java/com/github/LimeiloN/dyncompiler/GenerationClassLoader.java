@@ -0,0 +1,59 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler;
+
+/**
+ * A loader of one generation of an incremental build. It defines the classes of the build itself before asking its
+ * parent, so a class compiled again isn't shadowed by the one of a previous generation or of the shared loader.
+ */
+final class GenerationClassLoader extends DynamicClassLoader {
+
+    static {
+        registerAsParallelCapable();
+    }
+
+    GenerationClassLoader(ClassLoader parent) {
+
+        super(parent);
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> loaded = findLoaded(name);
+
+            if (loaded == null && getObject(name) != null)
+                loaded = findClass(name);
+
+            if (loaded == null)
+                return super.loadClass(name, resolve);
+
+            if (resolve)
+                resolveClass(loaded);
+            return loaded;
+        }
+    }
+}
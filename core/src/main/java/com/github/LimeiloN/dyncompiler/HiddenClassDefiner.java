@@ -0,0 +1,108 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler;
+
+import com.github.LimeiloN.dyncompiler.events.DefineClassEvent;
+import com.github.LimeiloN.dyncompiler.metrics.ClassLoadingMetrics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Defines classes as hidden classes (JDK 15+) next to a host class. Hidden classes aren't registered in their loader
+ * and can be unloaded as soon as they aren't reachable anymore, regardless of the other classes of the loader.
+ * <p>
+ * {@code Lookup.defineHiddenClass} is looked up reflectively so this still runs on JDK 11, where
+ * {@link #isSupported()} is false.
+ */
+final class HiddenClassDefiner {
+
+    private static final Method DEFINE_HIDDEN_CLASS;
+    // Empty Lookup.ClassOption[] : hidden classes aren't strongly tied to their loader
+    private static final Object NO_OPTIONS;
+
+    static {
+        Method define = null;
+        Object options = null;
+        try {
+            Class<?> optionClass = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            options = Array.newInstance(optionClass, 0);
+            define = MethodHandles.Lookup.class.getMethod("defineHiddenClass", byte[].class, boolean.class, options.getClass());
+        } catch (ReflectiveOperationException e) {
+            // Older JDK
+        }
+        DEFINE_HIDDEN_CLASS = define;
+        NO_OPTIONS = options;
+    }
+
+    // Full privilege lookup on the host, hidden classes are defined in its package and loader
+    private final MethodHandles.Lookup host;
+
+    HiddenClassDefiner(MethodHandles.Lookup host) {
+
+        this.host = host;
+    }
+
+    /**
+     * @return true if the running JDK can define hidden classes
+     */
+    static boolean isSupported() {
+
+        return DEFINE_HIDDEN_CLASS != null;
+    }
+
+    /**
+     * @param cls a class
+     * @return true if the class is hidden, their names are the only ones containing a '/'
+     */
+    static boolean isHidden(Class<?> cls) {
+
+        return cls.getName().indexOf('/') >= 0;
+    }
+
+    /**
+     * @param bytes the class file, in the same package as the host
+     * @return the hidden class, initialized
+     * @throws CompilerException if the class couldn't be defined
+     */
+    Class<?> define(byte[] bytes) throws CompilerException {
+
+        DefineClassEvent event = new DefineClassEvent();
+        event.begin();
+
+        try {
+            MethodHandles.Lookup lookup = (MethodHandles.Lookup) DEFINE_HIDDEN_CLASS.invoke(host, bytes, true, NO_OPTIONS);
+            event.defined(lookup.lookupClass().getName(), bytes.length, host.lookupClass().getClassLoader(), true);
+            ClassLoadingMetrics.hiddenClassDefined(lookup.lookupClass());
+            return lookup.lookupClass();
+        } catch (InvocationTargetException e) {
+            throw new CompilerException(e.getCause(), null);
+        } catch (IllegalAccessException e) {
+            throw new CompilerException(e, null);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler;
+
+import com.github.LimeiloN.dyncompiler.internal.Utils;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaCompiler;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The state of the incremental compilations of a compiler : the fingerprint of every source, the classes compiled from
+ * it and the sources it depends on, as found by javac. Sources are identified by the canonical name of their class.
+ * <p>
+ * Not thread safe, compilations are serialized by the compiler.
+ */
+final class IncrementalBuild {
+
+    private final Map<String, Unit> units = new HashMap<>();
+
+    /**
+     * @param sources the sources of the build, by name
+     * @param tracked false if the dependencies of the compiled sources can't be known, everything is compiled again
+     * @return the names of the sources to compile : the new and changed ones, and the ones depending (transitively)
+     * on a changed or removed source
+     */
+    Set<String> plan(Map<String, String> sources, boolean tracked) {
+
+        Set<String> dirty = new HashSet<>();
+        Deque<String> changed = new ArrayDeque<>();
+
+        for (Map.Entry<String, String> source : sources.entrySet()) {
+            Unit unit = units.get(source.getKey());
+            if (!tracked || unit == null || !unit.fingerprint.equals(Utils.sha256(source.getValue()))) {
+                dirty.add(source.getKey());
+                changed.add(source.getKey());
+            }
+        }
+
+        for (String name : units.keySet())
+            if (!sources.containsKey(name))
+                changed.add(name);
+
+        // Walks the dependencies backwards, from the changed sources to the ones using them
+        while (!changed.isEmpty()) {
+            String name = changed.poll();
+            for (Map.Entry<String, Unit> unit : units.entrySet())
+                if (unit.getValue().dependencies.contains(name) && sources.containsKey(unit.getKey()) && dirty.add(unit.getKey()))
+                    changed.add(unit.getKey());
+        }
+
+        return dirty;
+    }
+
+    /**
+     * @return the classes of the sources of the build which aren't compiled again, by binary name
+     */
+    Map<String, CompiledObject> reused(Map<String, String> sources, Set<String> dirty) {
+
+        Map<String, CompiledObject> reused = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Unit> unit : units.entrySet())
+            if (sources.containsKey(unit.getKey()) && !dirty.contains(unit.getKey()))
+                reused.putAll(unit.getValue().outputs);
+
+        return reused;
+    }
+
+    /**
+     * Records a successful compilation.
+     *
+     * @param sources   the sources of the build, by name
+     * @param compiled  the names of the compiled sources
+     * @param outputs   the classes compiled from them, by binary name
+     * @param collector the collector of the compilation, null if the dependencies are unknown
+     * @return the classes of all the sources of the build, by binary name
+     */
+    Map<String, CompiledObject> commit(Map<String, String> sources, Set<String> compiled, Map<String, CompiledObject> outputs,
+                                       Collector collector) {
+
+        units.keySet().retainAll(sources.keySet());
+        units.keySet().removeAll(compiled);
+
+        // The top level classes of every source, to find out which source a referenced class comes from
+        Map<String, String> declaring = new HashMap<>();
+        for (Map.Entry<String, Unit> unit : units.entrySet())
+            for (String type : unit.getValue().types)
+                declaring.put(type, unit.getKey());
+        for (String name : compiled)
+            for (String type : declaredTypes(name, collector))
+                declaring.put(type, name);
+
+        for (String name : compiled) {
+            Set<String> dependencies = new HashSet<>();
+            if (collector != null)
+                for (String type : collector.referenced.getOrDefault(name, Set.of())) {
+                    String source = declaring.get(type);
+                    if (source != null && !source.equals(name))
+                        dependencies.add(source);
+                }
+
+            units.put(name, new Unit(Utils.sha256(sources.get(name)), declaredTypes(name, collector), dependencies, new HashMap<>()));
+        }
+
+        // Nested classes are named after their top level class
+        for (Map.Entry<String, CompiledObject> output : outputs.entrySet()) {
+            int nested = output.getKey().indexOf('$', output.getKey().lastIndexOf('.') + 1);
+            String source = declaring.get(nested < 0 ? output.getKey() : output.getKey().substring(0, nested));
+            if (source != null)
+                units.get(source).outputs.put(output.getKey(), output.getValue());
+        }
+
+        Map<String, CompiledObject> all = new LinkedHashMap<>();
+        for (Unit unit : units.values())
+            all.putAll(unit.outputs);
+        return all;
+    }
+
+    private static Set<String> declaredTypes(String name, Collector collector) {
+
+        Set<String> declared = collector == null ? null : collector.declared.get(name);
+        return declared == null ? Set.of(name) : declared;
+    }
+
+    private static final class Unit {
+
+        final String fingerprint;
+        // Top level classes declared by the source, by binary name
+        final Set<String> types;
+        // Names of the sources whose classes are used by this one
+        final Set<String> dependencies;
+        // Classes compiled from the source, nested ones included, by binary name
+        final Map<String, CompiledObject> outputs;
+
+        Unit(String fingerprint, Set<String> types, Set<String> dependencies, Map<String, CompiledObject> outputs) {
+
+            this.fingerprint = fingerprint;
+            this.types = types;
+            this.dependencies = dependencies;
+            this.outputs = outputs;
+        }
+    }
+
+    /**
+     * Collects the top level classes declared and used by every compiled source, once javac attributed them.
+     * Javac calls its listeners from the thread running the task. Only created for the javac backend, which can't run
+     * without the optional jdk.compiler module.
+     */
+    static final class Collector implements TaskListener {
+
+        // Javac wraps the file objects it's given, sources are found by their URI
+        private final Map<URI, String> sources = new HashMap<>();
+        // By name of source
+        private final Map<String, Set<String>> declared = new HashMap<>();
+        private final Map<String, Set<String>> referenced = new HashMap<>();
+        private Trees trees;
+
+        /**
+         * @param units the compiled sources
+         */
+        Collector(List<SourceObject> units) {
+
+            for (SourceObject unit : units)
+                sources.put(unit.toUri(), unit.getCanonicalName());
+        }
+
+        /**
+         * @param task the task compiling the sources
+         * @return false if the task isn't a javac task, nothing is collected then
+         */
+        boolean attach(JavaCompiler.CompilationTask task) {
+
+            if (!(task instanceof JavacTask))
+                return false;
+
+            trees = Trees.instance(task);
+            ((JavacTask) task).addTaskListener(this);
+            return true;
+        }
+
+        @Override
+        public void finished(TaskEvent e) {
+
+            if (e.getKind() != TaskEvent.Kind.ANALYZE || e.getSourceFile() == null || e.getTypeElement() == null)
+                return;
+
+            String source = sources.get(e.getSourceFile().toUri());
+            if (source == null)
+                return;
+
+            declared.computeIfAbsent(source, s -> new HashSet<>()).add(e.getTypeElement().getQualifiedName().toString());
+
+            TreePath path = trees.getPath(e.getTypeElement());
+            if (path != null)
+                new References(referenced.computeIfAbsent(source, s -> new HashSet<>())).scan(path, null);
+        }
+
+        /**
+         * Every name of a class, of a member or of a constant resolves to an element, whose top level class is used.
+         */
+        private final class References extends TreePathScanner<Void, Void> {
+
+            private final Set<String> types;
+
+            References(Set<String> types) {
+
+                this.types = types;
+            }
+
+            @Override
+            public Void visitIdentifier(IdentifierTree node, Void unused) {
+
+                add(trees.getElement(getCurrentPath()));
+                return super.visitIdentifier(node, unused);
+            }
+
+            @Override
+            public Void visitMemberSelect(MemberSelectTree node, Void unused) {
+
+                add(trees.getElement(getCurrentPath()));
+                return super.visitMemberSelect(node, unused);
+            }
+
+            @Override
+            public Void visitMemberReference(MemberReferenceTree node, Void unused) {
+
+                add(trees.getElement(getCurrentPath()));
+                return super.visitMemberReference(node, unused);
+            }
+
+            private void add(Element element) {
+
+                TypeElement top = null;
+
+                for (Element e = element; e != null && e.getKind() != ElementKind.PACKAGE && e.getKind() != ElementKind.MODULE; e = e.getEnclosingElement())
+                    if (e instanceof TypeElement)
+                        top = (TypeElement) e;
+
+                if (top != null)
+                    types.add(top.getQualifiedName().toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.github.LimeiloN.dyncompiler;
+
+/**
+ * An expression computing an int from int arguments, without boxing.
+ * <p>
+ * Obtained through {@link DynCompiler#prepareInt(String, String...)}. Arguments are passed in an array, in the order of the parameter
+ * names given at compilation, reusing the same array across calls avoids any allocation. An expression with few parameters can rather
+ * be bound to a fixed arity interface like {@link java.util.function.IntBinaryOperator} with {@link DynCompiler#prepareFunction(Class, String, String...)}.
+ */
+@FunctionalInterface
+public interface IntExpression {
+
+    /**
+     * @param args the arguments, as many as the parameters of the expression
+     * @return the result of the expression
+     * @throws IllegalArgumentException if the number of arguments doesn't match the parameters
+     */
+    int eval(int[] args);
+}
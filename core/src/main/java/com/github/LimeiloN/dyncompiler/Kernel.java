@@ -0,0 +1,64 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler;
+
+import java.lang.reflect.Array;
+
+/**
+ * An expression evaluated over whole columns at once : row {@code i} of the output is the expression evaluated with
+ * row {@code i} of every input column.
+ * <p>
+ * Obtained through {@link DynCompiler#compileKernel(String, EvalContext)}. Columns are primitive arrays, one per
+ * parameter of the context and in the same order, holding the type of their parameter. The output is an array of the
+ * eval type of the context. The generated loop checks the bounds of every array once before the first row, so the JIT
+ * can unroll and vectorize it.
+ */
+@FunctionalInterface
+public interface Kernel {
+
+    /**
+     * Evaluates rows {@code from} (inclusive) to {@code to} (exclusive).
+     *
+     * @param columns the input columns, eg. a {@code double[]} for a {@code double} parameter
+     * @param output  the output column, eg. a {@code long[]} for a {@code long} eval type
+     * @param from    the first row
+     * @param to      the row after the last one
+     * @throws IndexOutOfBoundsException if a column or the output is shorter than {@code to}
+     * @throws ClassCastException        if a column or the output isn't an array of the expected type
+     * @throws IllegalArgumentException  if the number of columns doesn't match the parameters
+     */
+    void apply(Object[] columns, Object output, int from, int to);
+
+    /**
+     * Evaluates as many rows as the output holds.
+     *
+     * @param columns the input columns
+     * @param output  the output column
+     */
+    default void apply(Object[] columns, Object output) {
+
+        apply(columns, output, 0, Array.getLength(output));
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler;
+
+import com.github.LimeiloN.dyncompiler.problems.CompilationProblem;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.util.Locale;
+
+/**
+ * A problem reported by a compiler backend, seen as a javac diagnostic so both end up in {@link CompilerException}
+ * and in the diagnostic listener the same way.
+ */
+final class ProblemDiagnostic implements Diagnostic<JavaFileObject> {
+
+    private final CompilationProblem problem;
+
+    ProblemDiagnostic(CompilationProblem problem) {
+
+        this.problem = problem;
+    }
+
+    @Override
+    public Kind getKind() {
+
+        return problem.isError() ? Kind.ERROR : Kind.WARNING;
+    }
+
+    @Override
+    public JavaFileObject getSource() {
+
+        return null;
+    }
+
+    @Override
+    public long getPosition() {
+
+        return NOPOS;
+    }
+
+    @Override
+    public long getStartPosition() {
+
+        return NOPOS;
+    }
+
+    @Override
+    public long getEndPosition() {
+
+        return NOPOS;
+    }
+
+    @Override
+    public long getLineNumber() {
+
+        return problem.getStartLine();
+    }
+
+    @Override
+    public long getColumnNumber() {
+
+        return problem.getStartColumn();
+    }
+
+    @Override
+    public String getCode() {
+
+        return null;
+    }
+
+    @Override
+    public String getMessage(Locale locale) {
+
+        return problem.getMessage();
+    }
+
+    @Override
+    public String toString() {
+
+        return problem.toString();
+    }
+}
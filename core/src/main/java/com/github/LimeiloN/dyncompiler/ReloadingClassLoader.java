@@ -25,7 +25,9 @@
 
 package com.github.LimeiloN.dyncompiler;
 
+import com.github.LimeiloN.dyncompiler.events.ReloadEvent;
 import com.github.LimeiloN.dyncompiler.listeners.ReloadNotificationListener;
+import com.github.LimeiloN.dyncompiler.metrics.ClassLoadingMetrics;
 import com.github.LimeiloN.dyncompiler.stores.ResourceStore;
 import com.github.LimeiloN.dyncompiler.stores.ResourceStoreClassLoader;
 import org.apache.logging.log4j.LogManager;
@@ -104,7 +106,11 @@ public class ReloadingClassLoader extends ClassLoader implements ReloadNotificat
 
     public void handleNotification() {
         log.debug("reloading");
+        final ReloadEvent event = new ReloadEvent();
+        event.begin();
         delegate = new ResourceStoreClassLoader(parent, stores);
+        event.reloaded(stores.length);
+        ClassLoadingMetrics.reloaded();
     }
 
     @Override
@@ -0,0 +1,153 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler;
+
+import com.github.LimeiloN.dyncompiler.expr.InterpretedExpression;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An expression evaluated by an interpreter until it gets hot, then by its compiled class.
+ * <p>
+ * Evaluations are interpreted at first, which costs no compilation at all. Once the expression has been evaluated a
+ * given number of times, it's compiled on the async executor of the {@link DynCompiler} and the next evaluations call
+ * the compiled class. Expressions the interpreter doesn't support are compiled right away.
+ * <p>
+ * Obtained through {@link DynCompiler#prepareTiered(String, EvalContext)}.
+ *
+ * @param <T> the type of the values returned by the expression
+ */
+public final class TieredExpression<T> {
+
+    private static final Logger log = LogManager.getLogger(TieredExpression.class);
+
+    private final DynCompiler compiler;
+    private final String expr;
+    private final EvalContext<T> ctx;
+    // null if the expression can't be interpreted
+    private final InterpretedExpression interpreted;
+    private final long threshold;
+    private final AtomicLong invocations;
+    private volatile CompiledExpression<T> compiled;
+    private volatile CompletableFuture<CompiledExpression<T>> compilation;
+
+    TieredExpression(DynCompiler compiler, String expr, EvalContext<T> ctx, InterpretedExpression interpreted, long threshold) {
+
+        this.compiler = compiler;
+        this.expr = expr;
+        this.ctx = ctx;
+        this.interpreted = interpreted;
+        this.threshold = threshold;
+        this.invocations = new AtomicLong();
+    }
+
+    TieredExpression(DynCompiler compiler, String expr, EvalContext<T> ctx, CompiledExpression<T> compiled) {
+
+        this(compiler, expr, ctx, null, 0);
+        this.compiled = compiled;
+        this.compilation = CompletableFuture.completedFuture(compiled);
+    }
+
+    /**
+     * Evaluates the expression.
+     *
+     * @param args the arguments, in the order their parameters were added to the {@link EvalContext}
+     * @return the result of the expression
+     * @throws InvocationTargetException if the expression throws an exception
+     * @throws IllegalArgumentException  if the arguments don't match the parameters of the expression
+     */
+    @SuppressWarnings("unchecked")
+    public T eval(Object... args) throws InvocationTargetException {
+
+        CompiledExpression<T> c = compiled;
+        if (c != null)
+            return c.eval(args);
+
+        if (invocations.incrementAndGet() >= threshold && compilation == null)
+            startCompilation();
+
+        try {
+            return (T) interpreted.eval(args);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // Same as the compiled expression throwing
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    private synchronized void startCompilation() {
+
+        if (compilation != null)
+            return;
+
+        CompletableFuture<CompiledExpression<T>> future = compiler.prepareAsync(expr, ctx);
+        compilation = future;
+        future.whenComplete((result, e) -> compiled(future, result, e));
+    }
+
+    private synchronized void compiled(CompletableFuture<CompiledExpression<T>> future, CompiledExpression<T> result, Throwable e) {
+
+        if (e == null) {
+            compiled = result;
+        } else if (e instanceof RejectedExecutionException) {
+            // The executor is saturated, retry on a later evaluation
+            if (compilation == future)
+                compilation = null;
+        } else {
+            // Keep on interpreting
+            log.warn("Unable to compile the hot expression " + expr, e);
+        }
+    }
+
+    /**
+     * @return true if the evaluations go through the compiled class
+     */
+    public boolean isCompiled() {
+
+        return compiled != null;
+    }
+
+    /**
+     * @return the number of interpreted evaluations
+     */
+    public long getInvocationCount() {
+
+        return invocations.get();
+    }
+
+    /**
+     * @return the compilation of the expression, null if it hasn't started
+     */
+    CompletableFuture<CompiledExpression<T>> compilation() {
+
+        return compilation;
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler;
+
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.WildcardTypeName;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Records the scripts compiled for evaluations in a manifest file, so a later process can compile them all at startup
+ * with {@link DynCompiler#warmUp(Path)}.
+ * <p>
+ * Each line holds one entry, made of tab separated fields : the return type, the number of parameters, the name and
+ * type of each parameter, then the normalized script. Tabs, line breaks and backslashes are escaped. Lines starting
+ * with a '#' are comments.
+ */
+final class WarmUpManifest implements Closeable {
+
+    private final BufferedWriter writer;
+    // Entries already in the file, a script is recorded once
+    private final Set<EvalKey> recorded;
+
+    /**
+     * Opens a manifest to append entries to it, creating it if needed.
+     *
+     * @param file the manifest file
+     * @throws IOException if the file can't be read or opened
+     */
+    WarmUpManifest(Path file) throws IOException {
+
+        this.recorded = new HashSet<>();
+
+        if (Files.exists(file)) {
+            for (Entry entry : read(file))
+                recorded.add(new EvalKey(entry.script, entry.ctx));
+        }
+
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Appends a compiled script to the manifest, unless it was already recorded.
+     *
+     * @param key the compiled script
+     * @throws IOException if the entry can't be written
+     */
+    synchronized void record(EvalKey key) throws IOException {
+
+        if (!recorded.add(key))
+            return;
+
+        StringBuilder line = new StringBuilder(key.evalType.getName())
+                .append('\t').append(key.paramNames.size());
+        for (int i = 0; i < key.paramNames.size(); i++)
+            line.append('\t').append(key.paramNames.get(i)).append('\t').append(key.paramTypes.get(i));
+        line.append('\t').append(escape(key.script));
+
+        writer.write(line.toString());
+        writer.newLine();
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+
+        writer.close();
+    }
+
+    /**
+     * @param file a manifest
+     * @return the entries of the manifest, in order
+     * @throws IOException if the manifest can't be read or is malformed
+     */
+    static List<Entry> read(Path file) throws IOException {
+
+        List<Entry> entries = new ArrayList<>();
+        int lineNumber = 0;
+
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            lineNumber++;
+
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+
+            try {
+                entries.add(parse(line));
+            } catch (RuntimeException | ClassNotFoundException e) {
+                throw new IOException("Malformed warm-up manifest entry at " + file + ":" + lineNumber, e);
+            }
+        }
+
+        return entries;
+    }
+
+    private static Entry parse(String line) throws ClassNotFoundException {
+
+        String[] fields = line.split("\t", -1);
+        int params = Integer.parseInt(fields[1]);
+
+        if (fields.length != 3 + 2 * params)
+            throw new IllegalArgumentException("Expected " + (3 + 2 * params) + " fields but got " + fields.length);
+
+        EvalContext<?> ctx = new EvalContext<>(loadType(fields[0]));
+        for (int i = 0; i < params; i++)
+            ctx.addParam(fields[2 + 2 * i], parseType(fields[3 + 2 * i]));
+
+        return new Entry(unescape(fields[fields.length - 1]), ctx);
+    }
+
+    private static Class<?> loadType(String name) throws ClassNotFoundException {
+
+        for (Class<?> primitive : new Class<?>[]{boolean.class, byte.class, short.class, int.class, long.class,
+                                                 char.class, float.class, double.class, void.class})
+            if (primitive.getName().equals(name))
+                return primitive;
+
+        return Class.forName(name, false, WarmUpManifest.class.getClassLoader());
+    }
+
+    /**
+     * Parses the source representation of a type, as written by {@link TypeName#toString()}.
+     */
+    static TypeName parseType(String type) {
+
+        type = type.trim();
+
+        if (type.endsWith("[]"))
+            return ArrayTypeName.of(parseType(type.substring(0, type.length() - 2)));
+
+        if (type.equals("?"))
+            return WildcardTypeName.subtypeOf(Object.class);
+        if (type.startsWith("? extends "))
+            return WildcardTypeName.subtypeOf(parseType(type.substring("? extends ".length())));
+        if (type.startsWith("? super "))
+            return WildcardTypeName.supertypeOf(parseType(type.substring("? super ".length())));
+
+        int generic = type.indexOf('<');
+
+        if (generic >= 0) {
+            ClassName raw = ClassName.bestGuess(type.substring(0, generic));
+            List<TypeName> args = new ArrayList<>();
+            int depth = 0;
+            int start = generic + 1;
+
+            for (int i = start; i < type.length() - 1; i++) {
+                char c = type.charAt(i);
+                if (c == '<')
+                    depth++;
+                else if (c == '>')
+                    depth--;
+                else if (c == ',' && depth == 0) {
+                    args.add(parseType(type.substring(start, i)));
+                    start = i + 1;
+                }
+            }
+            args.add(parseType(type.substring(start, type.length() - 1)));
+
+            return ParameterizedTypeName.get(raw, args.toArray(new TypeName[0]));
+        }
+
+        switch (type) {
+            case "boolean":
+                return TypeName.BOOLEAN;
+            case "byte":
+                return TypeName.BYTE;
+            case "short":
+                return TypeName.SHORT;
+            case "int":
+                return TypeName.INT;
+            case "long":
+                return TypeName.LONG;
+            case "char":
+                return TypeName.CHAR;
+            case "float":
+                return TypeName.FLOAT;
+            case "double":
+                return TypeName.DOUBLE;
+            case "void":
+                return TypeName.VOID;
+            default:
+                return ClassName.bestGuess(type);
+        }
+    }
+
+    static String escape(String s) {
+
+        StringBuilder sb = new StringBuilder(s.length());
+
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+
+        return sb.toString();
+    }
+
+    static String unescape(String s) {
+
+        StringBuilder sb = new StringBuilder(s.length());
+
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+
+            if (c != '\\' || i == s.length() - 1) {
+                sb.append(c);
+                continue;
+            }
+
+            char next = s.charAt(++i);
+            switch (next) {
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                default:
+                    sb.append(next);
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * A recorded script and the context it was compiled with.
+     */
+    static final class Entry {
+
+        final String script;
+        final EvalContext<?> ctx;
+
+        Entry(String script, EvalContext<?> ctx) {
+
+            this.script = script;
+            this.ctx = ctx;
+        }
+    }
+}
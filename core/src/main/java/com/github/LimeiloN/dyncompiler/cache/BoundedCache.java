@@ -0,0 +1,165 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package com.github.LimeiloN.dyncompiler.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * A thread safe LRU cache bounded by its number of entries and by the total weight of its entries.
+ * <p>
+ * When any of the bounds is exceeded, the least recently used entries are evicted until the cache fits again.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class BoundedCache<K, V> {
+
+    private final long maximumSize;
+    private final long maximumWeight;
+    private final ToLongBiFunction<K, V> weigher;
+
+    // Access ordered, so the eldest entry is always the least recently used one
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private long weight;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * @param maximumSize   the maximum number of entries
+     * @param maximumWeight the maximum total weight of the entries
+     * @param weigher       computes the weight of an entry, must be positive and stable
+     */
+    public BoundedCache(long maximumSize, long maximumWeight, ToLongBiFunction<K, V> weigher) {
+
+        if (maximumSize < 0 || maximumWeight < 0)
+            throw new IllegalArgumentException("Cache bounds can't be negative");
+
+        this.maximumSize = maximumSize;
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Creates a cache only bounded by its number of entries.
+     *
+     * @param maximumSize the maximum number of entries
+     */
+    public BoundedCache(long maximumSize) {
+
+        this(maximumSize, Long.MAX_VALUE, (k, v) -> 1);
+    }
+
+    /**
+     * @param key the key to lookup
+     * @return the value associated with the key or null if absent
+     */
+    public synchronized V get(K key) {
+
+        Entry<V> e = entries.get(key);
+
+        if (e == null) {
+            missCount++;
+            return null;
+        }
+
+        hitCount++;
+        return e.value;
+    }
+
+    /**
+     * Associates the value with the key, possibly evicting other entries.
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    public synchronized void put(K key, V value) {
+
+        long w = weigher.applyAsLong(key, value);
+        Entry<V> old = entries.put(key, new Entry<>(value, w));
+
+        if (old != null)
+            weight -= old.weight;
+        weight += w;
+
+        evict();
+    }
+
+    public synchronized void invalidate(K key) {
+
+        Entry<V> old = entries.remove(key);
+        if (old != null)
+            weight -= old.weight;
+    }
+
+    public synchronized void invalidateAll() {
+
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized long size() {
+
+        return entries.size();
+    }
+
+    public synchronized long weight() {
+
+        return weight;
+    }
+
+    public synchronized CacheStats stats() {
+
+        return new CacheStats(hitCount, missCount, evictionCount);
+    }
+
+    private void evict() {
+
+        Iterator<Entry<V>> it = entries.values().iterator();
+
+        while (it.hasNext() && (entries.size() > maximumSize || weight > maximumWeight)) {
+            weight -= it.next().weight;
+            it.remove();
+            evictionCount++;
+        }
+    }
+
+    private static final class Entry<V> {
+
+        final V value;
+        final long weight;
+
+        Entry(V value, long weight) {
+
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread safe pool of heap buffers, by capacities of powers of two and bounded by the total capacity of the pooled
+ * buffers.
+ * <p>
+ * Buffers larger than the maximum capacity are allocated on demand and never pooled.
+ */
+public class ByteBufferPool {
+
+    private final int minimumShift;
+    private final int maximumShift;
+    private final long maximumPooled;
+
+    // Free buffers, by the shift of their capacity minus the minimum shift
+    private final List<ConcurrentLinkedQueue<ByteBuffer>> free;
+    private final AtomicLong pooled;
+
+    private final AtomicLong allocationCount;
+    private final AtomicLong reuseCount;
+
+    /**
+     * @param minimumCapacity the capacity of the smallest buffers, rounded up to a power of two
+     * @param maximumCapacity the capacity of the largest pooled buffers, rounded up to a power of two
+     * @param maximumPooled   the maximum total capacity of the buffers kept in the pool
+     */
+    public ByteBufferPool(int minimumCapacity, int maximumCapacity, long maximumPooled) {
+
+        if (minimumCapacity <= 0 || maximumCapacity < minimumCapacity || maximumCapacity > 1 << 30 || maximumPooled < 0)
+            throw new IllegalArgumentException("Invalid pool bounds");
+
+        this.minimumShift = shift(minimumCapacity);
+        this.maximumShift = shift(maximumCapacity);
+        this.maximumPooled = maximumPooled;
+        this.free = new ArrayList<>(maximumShift - minimumShift + 1);
+        for (int shift = minimumShift; shift <= maximumShift; shift++)
+            free.add(new ConcurrentLinkedQueue<>());
+        this.pooled = new AtomicLong();
+        this.allocationCount = new AtomicLong();
+        this.reuseCount = new AtomicLong();
+    }
+
+    /**
+     * @param capacity the minimum capacity of the buffer
+     * @return a cleared buffer, from the pool if one of the right size is free
+     */
+    public ByteBuffer acquire(int capacity) {
+
+        int shift = Math.max(minimumShift, shift(capacity));
+
+        if (shift <= maximumShift) {
+            ByteBuffer buffer = free.get(shift - minimumShift).poll();
+
+            if (buffer != null) {
+                pooled.addAndGet(-buffer.capacity());
+                reuseCount.incrementAndGet();
+                return buffer;
+            }
+        }
+
+        allocationCount.incrementAndGet();
+        return ByteBuffer.allocate(shift <= maximumShift ? 1 << shift : capacity);
+    }
+
+    /**
+     * Gives a buffer back to the pool, it must not be used anymore by the caller.
+     *
+     * @param buffer a buffer obtained from {@link #acquire(int)}
+     */
+    public void release(ByteBuffer buffer) {
+
+        int capacity = buffer.capacity();
+        int shift = shift(capacity);
+
+        if (capacity != 1 << shift || shift < minimumShift || shift > maximumShift)
+            return;
+
+        // Dropped when the pool is full, the GC takes care of it
+        if (pooled.addAndGet(capacity) > maximumPooled) {
+            pooled.addAndGet(-capacity);
+            return;
+        }
+
+        buffer.clear();
+        free.get(shift - minimumShift).offer(buffer);
+    }
+
+    /**
+     * @return the number of buffers allocated because none was free
+     */
+    public long getAllocationCount() {
+
+        return allocationCount.get();
+    }
+
+    /**
+     * @return the number of buffers served from the pool
+     */
+    public long getReuseCount() {
+
+        return reuseCount.get();
+    }
+
+    /**
+     * @return the total capacity of the buffers in the pool
+     */
+    public long getPooledBytes() {
+
+        return pooled.get();
+    }
+
+    /**
+     * @return the shift of the smallest power of two greater than or equal to the capacity
+     */
+    private static int shift(int capacity) {
+
+        return capacity <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(capacity - 1);
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.compilers;
+
+import com.github.LimeiloN.dyncompiler.problems.CompilationProblem;
+import com.github.LimeiloN.dyncompiler.readers.ResourceReader;
+import com.github.LimeiloN.dyncompiler.stores.ResourceStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Routes each compilation to one of several backends, choosing from the size of the sources, the latencies observed
+ * for sources of that size and the backend failure history.
+ * <p>
+ * Backends are given from the lightest (e.g. Janino) to the most complete (e.g. ECJ or javac). Until enough latencies
+ * are recorded for a size, small single sources go to the lightest backend and the others to the most complete one.
+ * When a backend reports errors, the compilation falls back to the next backends : if one of them succeeds, the
+ * failure is held against the first one (it doesn't support something in the sources) and backends failing too often
+ * for a size are skipped.
+ * <p>
+ * Failed attempts don't write to the store.
+ */
+public final class AdaptiveJavaCompiler extends AbstractJavaCompiler {
+
+    // Sizes are grouped by power of 2 (of kB)
+    private static final int SIZE_CLASSES = 12;
+
+    private final List<JavaCompiler> backends;
+    private final Map<JavaCompiler, Stats> stats;
+    private int smallSourceThreshold = 2048;
+    private int minSamples = 8;
+    private double maxUnsupportedRate = 0.2;
+
+    /**
+     * @param backends the backends, from the lightest to the most complete
+     */
+    public AdaptiveJavaCompiler(JavaCompiler... backends) {
+
+        if (backends.length == 0)
+            throw new IllegalArgumentException("At least one backend is required");
+
+        this.backends = Arrays.asList(backends.clone());
+        this.stats = new HashMap<>();
+        for (JavaCompiler backend : backends)
+            stats.put(backend, new Stats());
+    }
+
+    /**
+     * @param smallSourceThreshold the size in bytes under which a single source goes to the lightest backend first,
+     *                             until latencies are known
+     * @return this
+     */
+    public AdaptiveJavaCompiler setSmallSourceThreshold(int smallSourceThreshold) {
+
+        this.smallSourceThreshold = smallSourceThreshold;
+        return this;
+    }
+
+    /**
+     * @param minSamples the number of compilations of a size needed before trusting the latencies and failures of a
+     *                   backend
+     * @return this
+     */
+    public AdaptiveJavaCompiler setMinSamples(int minSamples) {
+
+        this.minSamples = minSamples;
+        return this;
+    }
+
+    /**
+     * @param maxUnsupportedRate the rate of compilations of a size a backend can fail (while another succeeds) before
+     *                           being skipped for that size
+     * @return this
+     */
+    public AdaptiveJavaCompiler setMaxUnsupportedRate(double maxUnsupportedRate) {
+
+        this.maxUnsupportedRate = maxUnsupportedRate;
+        return this;
+    }
+
+    /**
+     * @return the backends, from the lightest to the most complete
+     */
+    public List<JavaCompiler> getBackends() {
+
+        return Collections.unmodifiableList(backends);
+    }
+
+    /**
+     * @param backend one of the backends
+     * @return the latencies of the successful compilations of the backend, all sizes included
+     */
+    public LatencyHistogram getLatency(JavaCompiler backend) {
+
+        return stats(backend).total;
+    }
+
+    /**
+     * @param backend one of the backends
+     * @return the number of compilations the backend failed while another backend succeeded
+     */
+    public long getUnsupportedCount(JavaCompiler backend) {
+
+        return stats(backend).unsupportedTotal.get();
+    }
+
+    private Stats stats(JavaCompiler backend) {
+
+        Stats s = stats.get(backend);
+
+        if (s == null)
+            throw new IllegalArgumentException(backend + " isn't a backend of this compiler");
+
+        return s;
+    }
+
+    @Override
+    public JavaCompilerSettings createDefaultSettings() {
+
+        JavaCompilerSettings settings = new JavaCompilerSettings();
+        settings.setSourceVersion("11");
+        settings.setTargetVersion("11");
+        return settings;
+    }
+
+    @Override
+    public CompilationResult compile(String[] pResourcePaths, ResourceReader pReader, ResourceStore pStore,
+                                     ClassLoader pClassLoader, JavaCompilerSettings pSettings) {
+
+        long size = 0;
+        for (String path : pResourcePaths) {
+            byte[] source = pReader.getBytes(path);
+            size += source == null ? 0 : source.length;
+        }
+
+        int sizeClass = Math.min(SIZE_CLASSES - 1, 64 - Long.numberOfLeadingZeros(size >> 10));
+        boolean small = pResourcePaths.length == 1 && size <= smallSourceThreshold;
+        List<JavaCompiler> failed = new ArrayList<>();
+        CompilationResult result = null;
+
+        for (JavaCompiler backend : route(sizeClass, small)) {
+            StagingStore staging = new StagingStore(pStore);
+            long start = System.nanoTime();
+            result = backend.compile(pResourcePaths, pReader, staging, pClassLoader, pSettings);
+            long elapsed = System.nanoTime() - start;
+            Stats s = stats.get(backend);
+            s.attempts[sizeClass].incrementAndGet();
+
+            if (result.getErrors().length == 0) {
+                s.latency[sizeClass].record(elapsed);
+                s.total.record(elapsed);
+                staging.commit();
+
+                // The sources are fine, the backends that failed don't support them
+                for (JavaCompiler f : failed) {
+                    stats.get(f).unsupported[sizeClass].incrementAndGet();
+                    stats.get(f).unsupportedTotal.incrementAndGet();
+                }
+                break;
+            }
+
+            failed.add(backend);
+        }
+
+        if (problemHandler != null) {
+            for (CompilationProblem problem : result.getErrors())
+                problemHandler.handle(problem);
+            for (CompilationProblem problem : result.getWarnings())
+                problemHandler.handle(problem);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the backends in the order they should be tried
+     */
+    private List<JavaCompiler> route(int sizeClass, boolean small) {
+
+        List<JavaCompiler> candidates = new ArrayList<>(backends.size());
+        List<JavaCompiler> skipped = new ArrayList<>();
+
+        for (JavaCompiler backend : backends) {
+            Stats s = stats.get(backend);
+            long attempts = s.attempts[sizeClass].get();
+            if (attempts >= minSamples && s.unsupported[sizeClass].get() > maxUnsupportedRate * attempts)
+                skipped.add(backend);
+            else
+                candidates.add(backend);
+        }
+
+        boolean measured = candidates.stream().allMatch(b -> stats.get(b).latency[sizeClass].getCount() >= minSamples);
+
+        if (measured)
+            candidates.sort(Comparator.comparingLong(b -> stats.get(b).latency[sizeClass].getPercentile(50)));
+        else if (!small)
+            Collections.reverse(candidates);
+
+        // Skipped backends are still a last resort, and keep a chance to prove they support the sources
+        candidates.addAll(skipped);
+        return candidates;
+    }
+
+    private static final class Stats {
+
+        final LatencyHistogram[] latency = new LatencyHistogram[SIZE_CLASSES];
+        final AtomicLong[] attempts = new AtomicLong[SIZE_CLASSES];
+        final AtomicLong[] unsupported = new AtomicLong[SIZE_CLASSES];
+        final LatencyHistogram total = new LatencyHistogram();
+        final AtomicLong unsupportedTotal = new AtomicLong();
+
+        Stats() {
+
+            for (int i = 0; i < SIZE_CLASSES; i++) {
+                latency[i] = new LatencyHistogram();
+                attempts[i] = new AtomicLong();
+                unsupported[i] = new AtomicLong();
+            }
+        }
+    }
+
+    /**
+     * Buffers the writes of an attempt, reads fall through to the actual store.
+     */
+    private static final class StagingStore implements ResourceStore {
+
+        private final ResourceStore store;
+        private final Map<String, byte[]> written = new HashMap<>();
+
+        StagingStore(ResourceStore store) {
+
+            this.store = store;
+        }
+
+        @Override
+        public synchronized void write(String pResourceName, byte[] pResourceData) {
+
+            written.put(pResourceName, pResourceData);
+        }
+
+        @Override
+        public synchronized byte[] read(String pResourceName) {
+
+            byte[] data = written.get(pResourceName);
+            return data != null ? data : store.read(pResourceName);
+        }
+
+        @Override
+        public synchronized byte[] remove(String pResourceName) {
+
+            return written.remove(pResourceName);
+        }
+
+        synchronized void commit() {
+
+            written.forEach(store::write);
+        }
+    }
+}
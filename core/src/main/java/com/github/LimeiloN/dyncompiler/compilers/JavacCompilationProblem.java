@@ -0,0 +1,92 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.compilers;
+
+import com.github.LimeiloN.dyncompiler.problems.CompilationProblem;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.util.Locale;
+
+/**
+ * Wrapping a javac diagnostic
+ */
+public final class JavacCompilationProblem implements CompilationProblem {
+
+    private final Diagnostic<? extends JavaFileObject> diagnostic;
+
+    public JavacCompilationProblem(Diagnostic<? extends JavaFileObject> diagnostic) {
+
+        this.diagnostic = diagnostic;
+    }
+
+    @Override
+    public boolean isError() {
+
+        return diagnostic.getKind() == Diagnostic.Kind.ERROR;
+    }
+
+    @Override
+    public String getFileName() {
+
+        return diagnostic.getSource() == null ? null : diagnostic.getSource().getName();
+    }
+
+    @Override
+    public int getStartLine() {
+
+        return (int) diagnostic.getLineNumber();
+    }
+
+    @Override
+    public int getStartColumn() {
+
+        return (int) diagnostic.getColumnNumber();
+    }
+
+    @Override
+    public int getEndLine() {
+
+        return getStartLine();
+    }
+
+    @Override
+    public int getEndColumn() {
+
+        return getStartColumn() + (int) (diagnostic.getEndPosition() - diagnostic.getStartPosition());
+    }
+
+    @Override
+    public String getMessage() {
+
+        return diagnostic.getMessage(Locale.getDefault());
+    }
+
+    @Override
+    public String toString() {
+
+        return getFileName() + " (" + getStartLine() + ":" + getStartColumn() + ") : " + getMessage();
+    }
+}
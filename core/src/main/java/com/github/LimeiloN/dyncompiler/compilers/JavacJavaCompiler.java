@@ -0,0 +1,264 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.compilers;
+
+import com.github.LimeiloN.dyncompiler.events.CompileEvent;
+import com.github.LimeiloN.dyncompiler.events.CompilePhaseEvent;
+import com.github.LimeiloN.dyncompiler.internal.Utils;
+import com.github.LimeiloN.dyncompiler.problems.CompilationProblem;
+import com.github.LimeiloN.dyncompiler.readers.ResourceReader;
+import com.github.LimeiloN.dyncompiler.stores.ResourceStore;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The system javac as a {@link JavaCompiler}. Each compilation runs in its own file manager, so compilations can run
+ * concurrently.
+ * <p>
+ * Referenced classes are resolved on the class path of the JVM : javac can't look them up through a class loader, the
+ * class loader given to the compile methods is ignored.
+ */
+public final class JavacJavaCompiler extends AbstractJavaCompiler {
+
+    private final javax.tools.JavaCompiler compiler;
+
+    /**
+     * @throws IllegalStateException if the platform doesn't provide a compiler (JRE)
+     */
+    public JavacJavaCompiler() {
+
+        this.compiler = ToolProvider.getSystemJavaCompiler();
+
+        if (compiler == null)
+            throw new IllegalStateException("Unable to instantiate default system compiler. (Maybe we're on a JRE ?)");
+    }
+
+    /**
+     * @return settings targeting Java 11
+     */
+    @Override
+    public JavaCompilerSettings createDefaultSettings() {
+
+        JavaCompilerSettings settings = new JavaCompilerSettings();
+        settings.setSourceVersion("11");
+        settings.setTargetVersion("11");
+        return settings;
+    }
+
+    @Override
+    public CompilationResult compile(String[] pResourcePaths, ResourceReader pReader, ResourceStore pStore,
+                                     ClassLoader pClassLoader, JavaCompilerSettings pSettings) {
+
+        CompileEvent event = CompileEvent.begin("javac", pResourcePaths);
+        List<CompilationProblem> problems = new ArrayList<>();
+        List<JavaFileObject> units = new ArrayList<>(pResourcePaths.length);
+
+        for (String path : pResourcePaths) {
+            byte[] source = pReader.getBytes(path);
+
+            if (source == null) {
+                problems.add(new MissingSource(path));
+                continue;
+            }
+
+            event.sourceRead(source.length);
+
+            units.add(new Source(path, new String(source, Charset.forName(pSettings.getSourceEncoding()))));
+        }
+
+        if (!problems.isEmpty()) {
+            event.complete(problems.size());
+            return new CompilationResult(problems.toArray(new CompilationProblem[0]));
+        }
+
+        List<String> options = new ArrayList<>();
+        options.add("-source");
+        options.add(pSettings.getSourceVersion());
+        options.add("-target");
+        options.add(pSettings.getTargetVersion());
+        options.add("-encoding");
+        options.add(pSettings.getSourceEncoding());
+        options.add(pSettings.isDebug() ? "-g" : "-g:none");
+        if (!pSettings.isWarnings())
+            options.add("-nowarn");
+        if (pSettings.isDeprecations())
+            options.add("-deprecation");
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager standard = compiler.getStandardFileManager(null, null, null);
+
+        try {
+            javax.tools.JavaCompiler.CompilationTask task = compiler.getTask(null, new StoreFileManager(standard, event.record(pStore)),
+                                                                             diagnostics, options, null, units);
+            CompilePhaseEvent.listen(task);
+            task.call();
+        } finally {
+            Utils.closeQuietly(standard);
+        }
+
+        diagnostics.getDiagnostics().forEach(d -> {
+            CompilationProblem problem = new JavacCompilationProblem(d);
+            if (problemHandler != null)
+                problemHandler.handle(problem);
+            problems.add(problem);
+        });
+
+        CompilationProblem[] result = problems.toArray(new CompilationProblem[0]);
+        event.complete(result);
+        return new CompilationResult(result);
+    }
+
+    private static final class Source extends SimpleJavaFileObject {
+
+        private final String code;
+
+        Source(String path, String code) {
+
+            super(URI.create("string:///" + path), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+
+            return code;
+        }
+    }
+
+    /**
+     * Writes the class files to the store, under their resource path.
+     */
+    private static final class StoreFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+
+        private final ResourceStore store;
+
+        StoreFileManager(JavaFileManager fileManager, ResourceStore store) {
+
+            super(fileManager);
+            this.store = store;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                   FileObject sibling) throws IOException {
+
+            if (kind != JavaFileObject.Kind.CLASS)
+                return super.getJavaFileForOutput(location, className, kind, sibling);
+
+            String path = Utils.convertClassToResourcePath(className);
+
+            return new SimpleJavaFileObject(URI.create("string:///" + path), kind) {
+
+                @Override
+                public OutputStream openOutputStream() {
+
+                    return new ByteArrayOutputStream() {
+
+                        @Override
+                        public void close() {
+
+                            store.write(path, toByteArray());
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    /**
+     * Error reported for a source the reader doesn't provide.
+     */
+    private static final class MissingSource implements CompilationProblem {
+
+        private final String path;
+
+        MissingSource(String path) {
+
+            this.path = path;
+        }
+
+        @Override
+        public boolean isError() {
+
+            return true;
+        }
+
+        @Override
+        public String getFileName() {
+
+            return path;
+        }
+
+        @Override
+        public int getStartLine() {
+
+            return 0;
+        }
+
+        @Override
+        public int getStartColumn() {
+
+            return 0;
+        }
+
+        @Override
+        public int getEndLine() {
+
+            return 0;
+        }
+
+        @Override
+        public int getEndColumn() {
+
+            return 0;
+        }
+
+        @Override
+        public String getMessage() {
+
+            return "Source " + path + " could not be found";
+        }
+
+        @Override
+        public String toString() {
+
+            return getMessage();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.compilers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of latencies, with power of two buckets : percentiles are accurate to a factor of 2, which is
+ * enough to compare compilers whose latencies differ by orders of magnitude.
+ */
+public final class LatencyHistogram {
+
+    // Bucket i counts the latencies in [2^i, 2^(i+1)) nanoseconds
+    private final AtomicLongArray buckets = new AtomicLongArray(64);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+
+    /**
+     * @param nanos a latency, in nanoseconds
+     */
+    public void record(long nanos) {
+
+        nanos = Math.max(1, nanos);
+        buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+    }
+
+    /**
+     * @return the number of recorded latencies
+     */
+    public long getCount() {
+
+        return count.get();
+    }
+
+    /**
+     * @param unit the unit of the result
+     * @return the mean latency, 0 if nothing was recorded
+     */
+    public double getMean(TimeUnit unit) {
+
+        long n = count.get();
+        return n == 0 ? 0 : (double) total.get() / n / unit.toNanos(1);
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket holding the percentile, in nanoseconds, 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+
+        long n = count.get();
+
+        if (n == 0)
+            return 0;
+
+        long rank = (long) Math.ceil(percentile / 100 * n);
+        long seen = 0;
+
+        for (int i = 0; i < 64; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank)
+                return i == 63 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+        }
+
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+
+        return "count=" + getCount() + ", mean=" + getMean(TimeUnit.MILLISECONDS) + "ms, p50=" + getPercentile(50) / 1e6
+               + "ms, p99=" + getPercentile(99) / 1e6 + "ms";
+    }
+}
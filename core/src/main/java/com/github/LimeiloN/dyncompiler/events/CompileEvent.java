@@ -0,0 +1,206 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.events;
+
+import com.github.LimeiloN.dyncompiler.problems.CompilationProblem;
+import com.github.LimeiloN.dyncompiler.stores.ResourceStore;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.util.Arrays;
+
+/**
+ * Flight Recorder event of a compilation, from the sources to the class files.
+ * <p>
+ * Usage : {@code CompileEvent event = CompileEvent.begin(...)}, report the sources read and the store written to with
+ * {@link #sourceRead(long)} and {@link #record(ResourceStore)}, then {@link #complete(CompilationProblem[])}. When
+ * the event is disabled, or the runtime has no Flight Recorder, none of this records anything.
+ */
+public final class CompileEvent {
+
+    // Null when disabled or without Flight Recorder
+    private final Recorded recorded;
+    private long sourceBytes;
+    private int classCount;
+    private long bytecodeBytes;
+
+    private CompileEvent(Recorded recorded) {
+
+        this.recorded = recorded;
+    }
+
+    /**
+     * Starts timing a compilation.
+     *
+     * @param compiler the name of the compiler
+     * @param sources  the names of the compiled sources
+     * @return the started event
+     */
+    public static CompileEvent begin(String compiler, String[] sources) {
+
+        if (!FlightRecorder.AVAILABLE)
+            return new CompileEvent(null);
+
+        Recorded recorded = new Recorded();
+
+        if (!recorded.isEnabled())
+            return new CompileEvent(null);
+
+        recorded.compiler = compiler;
+        recorded.sources = String.join(", ", sources);
+        recorded.sourceCount = sources.length;
+        recorded.begin();
+        return new CompileEvent(recorded);
+    }
+
+    /**
+     * @return true if the event is recorded, the sizes of the sources and class files are only needed then
+     */
+    public boolean isEnabled() {
+
+        return recorded != null;
+    }
+
+    /**
+     * @param size the size of a compiled source
+     */
+    public void sourceRead(long size) {
+
+        sourceBytes += size;
+    }
+
+    /**
+     * @param classFile a class file written by the compilation
+     */
+    public void classWritten(byte[] classFile) {
+
+        classWritten(classFile.length);
+    }
+
+    /**
+     * @param length the size of a class file written by the compilation
+     */
+    public void classWritten(int length) {
+
+        classCount++;
+        bytecodeBytes += length;
+    }
+
+    /**
+     * @param store the store the class files are written to
+     * @return a store counting the class files written into the given one, or the store itself if disabled
+     */
+    public ResourceStore record(ResourceStore store) {
+
+        if (!isEnabled())
+            return store;
+
+        return new ResourceStore() {
+
+            @Override
+            public void write(String pResourceName, byte[] pResourceData) {
+
+                classWritten(pResourceData);
+                store.write(pResourceName, pResourceData);
+            }
+
+            @Override
+            public byte[] read(String pResourceName) {
+
+                return store.read(pResourceName);
+            }
+
+            @Override
+            public byte[] remove(String pResourceName) {
+
+                return store.remove(pResourceName);
+            }
+        };
+    }
+
+    /**
+     * Ends and commits the event.
+     *
+     * @param problems the problems reported by the compilation
+     */
+    public void complete(CompilationProblem[] problems) {
+
+        complete((int) Arrays.stream(problems).filter(CompilationProblem::isError).count());
+    }
+
+    /**
+     * Ends and commits the event.
+     *
+     * @param errors the number of errors reported by the compilation
+     */
+    public void complete(int errors) {
+
+        if (recorded == null)
+            return;
+
+        recorded.end();
+        if (recorded.shouldCommit()) {
+            recorded.sourceBytes = sourceBytes;
+            recorded.classCount = classCount;
+            recorded.bytecodeBytes = bytecodeBytes;
+            recorded.errors = errors;
+            recorded.commit();
+        }
+    }
+
+    @Name("com.github.LimeiloN.dyncompiler.Compile")
+    @Label("Compile")
+    @Category("Dynamic Compiler")
+    @Description("Compilation of sources to class files")
+    static final class Recorded extends Event {
+
+        @Label("Compiler")
+        String compiler;
+
+        @Label("Sources")
+        String sources;
+
+        @Label("Source Count")
+        int sourceCount;
+
+        @Label("Source Size")
+        @DataAmount
+        long sourceBytes;
+
+        @Label("Class Count")
+        int classCount;
+
+        @Label("Bytecode Size")
+        @DataAmount
+        long bytecodeBytes;
+
+        @Label("Errors")
+        int errors;
+    }
+}
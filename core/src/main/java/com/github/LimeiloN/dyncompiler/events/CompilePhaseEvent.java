@@ -0,0 +1,131 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.events;
+
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import javax.tools.JavaCompiler;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Flight Recorder event of a phase of javac (parse, enter, analyze, generate...) on a source or a class, timed by a
+ * javac {@link TaskListener}.
+ * <p>
+ * The jdk.compiler module is an optional dependency, it's only touched for the tasks of javac, which can't run without it.
+ */
+public final class CompilePhaseEvent {
+
+    private CompilePhaseEvent() {
+
+    }
+
+    /**
+     * Emits an event for each phase of the task, if the event is enabled and the task is a javac task.
+     *
+     * @param task a task that hasn't been called yet
+     */
+    public static void listen(JavaCompiler.CompilationTask task) {
+
+        if (FlightRecorder.AVAILABLE && isJavacTask(task))
+            PhaseListener.listen((JavacTask) task);
+    }
+
+    private static boolean isJavacTask(JavaCompiler.CompilationTask task) {
+
+        // Checked by module first, loading JavacTask fails without jdk.compiler
+        return "jdk.compiler".equals(task.getClass().getModule().getName()) && task instanceof JavacTask;
+    }
+
+    @Name("com.github.LimeiloN.dyncompiler.CompilePhase")
+    @Label("Compile Phase")
+    @Category("Dynamic Compiler")
+    @Description("Phase of a javac compilation")
+    static final class Recorded extends Event {
+
+        static final EventType TYPE = EventType.getEventType(Recorded.class);
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Source")
+        String source;
+
+        @Label("Class Name")
+        String className;
+    }
+
+    /**
+     * Javac calls its listeners from the thread running the task.
+     */
+    private static final class PhaseListener implements TaskListener {
+
+        private final Map<String, Recorded> started = new HashMap<>();
+
+        static void listen(JavacTask task) {
+
+            if (Recorded.TYPE.isEnabled())
+                task.addTaskListener(new PhaseListener());
+        }
+
+        @Override
+        public void started(TaskEvent e) {
+
+            Recorded event = new Recorded();
+            event.begin();
+            started.put(key(e), event);
+        }
+
+        @Override
+        public void finished(TaskEvent e) {
+
+            Recorded event = started.remove(key(e));
+
+            if (event == null)
+                return;
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = e.getKind().name();
+                event.source = e.getSourceFile() == null ? null : e.getSourceFile().getName();
+                event.className = e.getTypeElement() == null ? null : e.getTypeElement().getQualifiedName().toString();
+                event.commit();
+            }
+        }
+
+        private static String key(TaskEvent e) {
+
+            return e.getKind() + ":" + (e.getSourceFile() == null ? "" : e.getSourceFile().toUri()) + ":" + e.getTypeElement();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event of the definition of a class from its class file. Records nothing when the runtime has no
+ * Flight Recorder.
+ */
+public final class DefineClassEvent {
+
+    // Null without Flight Recorder
+    private final Recorded recorded;
+
+    public DefineClassEvent() {
+
+        this.recorded = FlightRecorder.AVAILABLE ? new Recorded() : null;
+    }
+
+    /**
+     * Starts timing the definition.
+     */
+    public void begin() {
+
+        if (recorded != null)
+            recorded.begin();
+    }
+
+    /**
+     * Ends and commits the event.
+     *
+     * @param className the name of the defined class
+     * @param bytes     the size of its class file
+     * @param loader    the loader defining the class
+     * @param hidden    true if it's defined as a hidden class
+     */
+    public void defined(String className, long bytes, ClassLoader loader, boolean hidden) {
+
+        if (recorded == null)
+            return;
+
+        recorded.end();
+        if (recorded.shouldCommit()) {
+            recorded.className = className;
+            recorded.bytes = bytes;
+            recorded.classLoader = loader.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(loader));
+            recorded.hidden = hidden;
+            recorded.commit();
+        }
+    }
+
+    @Name("com.github.LimeiloN.dyncompiler.DefineClass")
+    @Label("Define Class")
+    @Category("Dynamic Compiler")
+    @Description("Definition of a compiled class by a class loader")
+    static final class Recorded extends Event {
+
+        @Label("Class Name")
+        String className;
+
+        @Label("Class File Size")
+        @DataAmount
+        long bytes;
+
+        @Label("Class Loader")
+        String classLoader;
+
+        @Label("Hidden")
+        boolean hidden;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event of a {@link com.github.LimeiloN.dyncompiler.ReloadingClassLoader} swapping its delegate loader.
+ * Records nothing when the runtime has no Flight Recorder.
+ */
+public final class ReloadEvent {
+
+    // Null without Flight Recorder
+    private final Recorded recorded;
+
+    public ReloadEvent() {
+
+        this.recorded = FlightRecorder.AVAILABLE ? new Recorded() : null;
+    }
+
+    /**
+     * Starts timing the reload.
+     */
+    public void begin() {
+
+        if (recorded != null)
+            recorded.begin();
+    }
+
+    /**
+     * Ends and commits the event.
+     *
+     * @param stores the number of resource stores the classes are reloaded from
+     */
+    public void reloaded(int stores) {
+
+        if (recorded == null)
+            return;
+
+        recorded.end();
+        if (recorded.shouldCommit()) {
+            recorded.stores = stores;
+            recorded.commit();
+        }
+    }
+
+    @Name("com.github.LimeiloN.dyncompiler.Reload")
+    @Label("Reload")
+    @Category("Dynamic Compiler")
+    @Description("Reload of the classes of a reloading class loader")
+    static final class Recorded extends Event {
+
+        @Label("Resource Stores")
+        int stores;
+    }
+}
@@ -0,0 +1,588 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.expr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Emits the class file of an {@link InterpretedExpression} directly, without going through javac. The class holds
+ * the static evaluation method and a static method returning a lookup on the class, like the classes generated from
+ * sources.
+ * <p>
+ * Class files are emitted in version 49 (Java 5), the last one verified without stack map frames, and the code is
+ * the same javac generates for the expression.
+ */
+public final class BytecodeEmitter {
+
+    private static final int CLASS_VERSION = 49;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int ICONST_0 = 0x03;
+    private static final int LCONST_0 = 0x09;
+    private static final int DCONST_0 = 0x0e;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int ILOAD = 0x15;
+    private static final int LLOAD = 0x16;
+    private static final int DLOAD = 0x18;
+    // iadd, then ladd, fadd, dadd, isub... : opcode = IADD + 4 * operation + type offset
+    private static final int IADD = 0x60;
+    private static final int INEG = 0x74;
+    private static final int IXOR = 0x82;
+    private static final int I2L = 0x85;
+    private static final int I2D = 0x87;
+    private static final int L2D = 0x8a;
+    private static final int LCMP = 0x94;
+    private static final int DCMPL = 0x97;
+    private static final int DCMPG = 0x98;
+    private static final int IFEQ = 0x99;
+    private static final int IFNE = 0x9a;
+    private static final int IFLT = 0x9b;
+    private static final int IFGE = 0x9c;
+    private static final int IFGT = 0x9d;
+    private static final int IFLE = 0x9e;
+    // if_icmpeq = IFEQ + IF_ICMP, same order
+    private static final int IF_ICMP = 0x06;
+    private static final int GOTO = 0xa7;
+    private static final int IRETURN = 0xac;
+    private static final int LRETURN = 0xad;
+    private static final int DRETURN = 0xaf;
+    private static final int ARETURN = 0xb0;
+    private static final int INVOKESTATIC = 0xb8;
+
+    private final ConstantPool pool = new ConstantPool();
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+    private final List<Label> labels = new ArrayList<>();
+    // Local variable of each parameter
+    private int[] slots;
+    private int stack;
+    private int maxStack;
+
+    private BytecodeEmitter() {
+
+    }
+
+    /**
+     * @param className    the binary name of the class
+     * @param methodName   the name of the evaluation method
+     * @param returnType   the return type of the evaluation method, the expression must be assignable to it
+     * @param expr         the expression
+     * @param lookupMethod the name of the method returning a lookup on the class
+     * @return the class file
+     * @throws UnsupportedExpressionException if the code of the expression is too large for this emitter
+     */
+    public static byte[] emit(String className, String methodName, Class<?> returnType, InterpretedExpression expr,
+                              String lookupMethod) throws UnsupportedExpressionException {
+
+        return new BytecodeEmitter().emitClass(className.replace('.', '/'), methodName, returnType, expr, lookupMethod);
+    }
+
+    private byte[] emitClass(String internalName, String methodName, Class<?> returnType, InterpretedExpression expr,
+                             String lookupMethod) throws UnsupportedExpressionException {
+
+        int thisClass = pool.classRef(internalName);
+        int superClass = pool.classRef("java/lang/Object");
+
+        // Evaluation method
+        StringBuilder descriptor = new StringBuilder("(");
+        slots = new int[expr.params.length];
+        int locals = 0;
+        for (int i = 0; i < expr.params.length; i++) {
+            Type type = expr.params[i];
+            descriptor.append(descriptor(type.primitive));
+            slots[i] = locals;
+            locals += size(type);
+        }
+        descriptor.append(')').append(descriptor(returnType));
+
+        if (locals > 255)
+            throw new UnsupportedExpressionException("Too many parameters");
+
+        emit(expr.root, expr.resultType);
+
+        if (returnType.isPrimitive()) {
+            op(expr.resultType == Type.LONG ? LRETURN : expr.resultType == Type.DOUBLE ? DRETURN : IRETURN, -size(expr.resultType));
+        } else {
+            String wrapper = internalName(expr.resultType.wrapper);
+            invoke(INVOKESTATIC, wrapper, "valueOf", "(" + descriptor(expr.resultType.primitive) + ")L" + wrapper + ";", 1 - size(expr.resultType));
+            op(ARETURN, -1);
+        }
+
+        byte[] evalCode = code.toByteArray();
+        for (Label label : labels)
+            label.patch(evalCode);
+
+        if (evalCode.length > Short.MAX_VALUE)
+            throw new UnsupportedExpressionException("Expression too large");
+
+        int evalMaxStack = maxStack;
+
+        // Lookup method
+        code.reset();
+        invoke(INVOKESTATIC, "java/lang/invoke/MethodHandles", "lookup", "()Ljava/lang/invoke/MethodHandles$Lookup;", 1);
+        op(ARETURN, -1);
+        byte[] lookupCode = code.toByteArray();
+
+        int evalName = pool.utf8(methodName);
+        int evalDescriptor = pool.utf8(descriptor.toString());
+        int lookupName = pool.utf8(lookupMethod);
+        int lookupDescriptor = pool.utf8("()Ljava/lang/invoke/MethodHandles$Lookup;");
+        int codeAttribute = pool.utf8("Code");
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + evalCode.length);
+            DataOutputStream out = new DataOutputStream(bytes);
+
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_VERSION);
+            pool.write(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(2); // methods
+            writeMethod(out, ACC_PUBLIC | ACC_STATIC | ACC_FINAL, evalName, evalDescriptor, codeAttribute, evalMaxStack, locals, evalCode);
+            writeMethod(out, ACC_PUBLIC | ACC_STATIC, lookupName, lookupDescriptor, codeAttribute, 1, 0, lookupCode);
+            out.writeShort(0); // attributes
+
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // In memory
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeMethod(DataOutputStream out, int access, int name, int descriptor, int codeAttribute,
+                                    int maxStack, int maxLocals, byte[] code) throws IOException {
+
+        out.writeShort(access);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(codeAttribute);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0); // exceptions
+        out.writeShort(0); // attributes
+    }
+
+    /**
+     * Emits the code pushing the value of the node, converted to the wanted type.
+     */
+    private void emit(Node node, Type want) {
+
+        if (node instanceof Node.Literal) {
+            constant(((Node.Literal) node).value, want);
+        } else if (node instanceof Node.Param) {
+            Node.Param param = (Node.Param) node;
+            int slot = slots[param.index];
+            Type type = param.type;
+            op(type == Type.LONG ? LLOAD : type == Type.DOUBLE ? DLOAD : ILOAD, slot, size(type));
+            widen(type, want);
+        } else if (node instanceof Node.Unary) {
+            Node.Unary unary = (Node.Unary) node;
+            emit(unary.operand, node.type);
+            if (unary.op == Node.Op.NOT) {
+                op(ICONST_0 + 1, 1);
+                op(IXOR, -1);
+            } else {
+                op(INEG + offset(node.type), 0);
+                widen(node.type, want);
+            }
+        } else if (node instanceof Node.Arithmetic) {
+            Node.Arithmetic arithmetic = (Node.Arithmetic) node;
+            emit(arithmetic.left, node.type);
+            emit(arithmetic.right, node.type);
+            op(IADD + 4 * arithmetic.op.ordinal() + offset(node.type), -size(node.type));
+            widen(node.type, want);
+        } else if (node instanceof Node.Condition) {
+            condition((Node.Condition) node);
+        } else if (node instanceof Node.Ternary) {
+            Node.Ternary ternary = (Node.Ternary) node;
+            Label otherwise = new Label();
+            Label end = new Label();
+            emit(ternary.condition, Type.BOOLEAN);
+            jump(IFEQ, otherwise, -1);
+            int depth = stack;
+            emit(ternary.then, want);
+            jump(GOTO, end, 0);
+            mark(otherwise, depth);
+            emit(ternary.otherwise, want);
+            mark(end, stack);
+        } else {
+            Node.MathCall call = (Node.MathCall) node;
+            boolean overloaded = call.name.equals("abs") || call.name.equals("min") || call.name.equals("max");
+            Type argType = overloaded ? node.type : Type.DOUBLE;
+            StringBuilder descriptor = new StringBuilder("(");
+            for (Node argument : call.arguments) {
+                emit(argument, argType);
+                descriptor.append(descriptor(argType.primitive));
+            }
+            descriptor.append(')').append(descriptor(node.type.primitive));
+            invoke(INVOKESTATIC, "java/lang/Math", call.name, descriptor.toString(),
+                   size(node.type) - call.arguments.length * size(argType));
+            widen(node.type, want);
+        }
+    }
+
+    /**
+     * Emits a comparison or logical operator, pushing 1 if true, 0 otherwise.
+     */
+    private void condition(Node.Condition node) {
+
+        Label isTrue = new Label();
+        Label end = new Label();
+        int depth = stack;
+
+        switch (node.op) {
+            case AND:
+                Label isFalse = new Label();
+                emit(node.left, Type.BOOLEAN);
+                jump(IFEQ, isFalse, -1);
+                emit(node.right, Type.BOOLEAN);
+                jump(IFEQ, isFalse, -1);
+                op(ICONST_0 + 1, 1);
+                jump(GOTO, end, 0);
+                mark(isFalse, depth);
+                op(ICONST_0, 1);
+                mark(end, depth + 1);
+                return;
+            case OR:
+                emit(node.left, Type.BOOLEAN);
+                jump(IFNE, isTrue, -1);
+                emit(node.right, Type.BOOLEAN);
+                jump(IFNE, isTrue, -1);
+                break;
+            default:
+                Type type = node.operandType;
+                emit(node.left, type);
+                emit(node.right, type);
+                int branch = branch(node.op);
+                if (type == Type.LONG) {
+                    op(LCMP, -3);
+                    jump(branch, isTrue, -1);
+                } else if (type == Type.DOUBLE) {
+                    // NaN makes every comparison false but !=
+                    op(node.op == Node.Op.LT || node.op == Node.Op.LE ? DCMPG : DCMPL, -3);
+                    jump(branch, isTrue, -1);
+                } else {
+                    jump(branch + IF_ICMP, isTrue, -2);
+                }
+        }
+
+        op(ICONST_0, 1);
+        jump(GOTO, end, 0);
+        mark(isTrue, depth);
+        op(ICONST_0 + 1, 1);
+        mark(end, depth + 1);
+    }
+
+    private static int branch(Node.Op op) {
+
+        switch (op) {
+            case LT:
+                return IFLT;
+            case LE:
+                return IFLE;
+            case GT:
+                return IFGT;
+            case GE:
+                return IFGE;
+            case EQ:
+                return IFEQ;
+            default:
+                return IFNE;
+        }
+    }
+
+    private void constant(Object value, Type want) {
+
+        if (want == Type.BOOLEAN) {
+            op((Boolean) value ? ICONST_0 + 1 : ICONST_0, 1);
+        } else if (want == Type.INT) {
+            int i = (Integer) value;
+            if (i >= -1 && i <= 5)
+                op(ICONST_0 + i, 1);
+            else if (i >= Byte.MIN_VALUE && i <= Byte.MAX_VALUE)
+                op(BIPUSH, i & 0xff, 1);
+            else if (i >= Short.MIN_VALUE && i <= Short.MAX_VALUE)
+                op2(SIPUSH, i, 1);
+            else
+                ldc(pool.integer(i));
+        } else if (want == Type.LONG) {
+            long l = ((Number) value).longValue();
+            if (l == 0 || l == 1)
+                op(LCONST_0 + (int) l, 2);
+            else
+                op2(LDC2_W, pool.longConstant(l), 2);
+        } else {
+            double d = ((Number) value).doubleValue();
+            // Not for -0.0
+            if (Double.doubleToRawLongBits(d) == 0 || d == 1)
+                op(DCONST_0 + (int) d, 2);
+            else
+                op2(LDC2_W, pool.doubleConstant(d), 2);
+        }
+    }
+
+    private void ldc(int index) {
+
+        if (index <= 0xff)
+            op(LDC, index, 1);
+        else
+            op2(LDC_W, index, 1);
+    }
+
+    private void widen(Type from, Type to) {
+
+        if (from == to)
+            return;
+
+        if (from == Type.INT)
+            op(to == Type.LONG ? I2L : I2D, 1);
+        else
+            op(L2D, 0);
+    }
+
+    private void invoke(int opcode, String owner, String name, String descriptor, int stackDelta) {
+
+        op2(opcode, pool.methodRef(owner, name, descriptor), stackDelta);
+    }
+
+    private void op(int opcode, int stackDelta) {
+
+        code.write(opcode);
+        adjust(stackDelta);
+    }
+
+    private void op(int opcode, int operand, int stackDelta) {
+
+        code.write(opcode);
+        code.write(operand);
+        adjust(stackDelta);
+    }
+
+    private void op2(int opcode, int operand, int stackDelta) {
+
+        code.write(opcode);
+        code.write(operand >> 8);
+        code.write(operand);
+        adjust(stackDelta);
+    }
+
+    private void jump(int opcode, Label target, int stackDelta) {
+
+        target.jumps.add(code.size());
+        op2(opcode, 0, stackDelta);
+    }
+
+    /**
+     * @param depth the depth of the stack at the label, which is only reached by jumps after a goto
+     */
+    private void mark(Label label, int depth) {
+
+        label.position = code.size();
+        labels.add(label);
+        stack = depth;
+    }
+
+    private void adjust(int stackDelta) {
+
+        stack += stackDelta;
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    private static int size(Type type) {
+
+        return type == Type.LONG || type == Type.DOUBLE ? 2 : 1;
+    }
+
+    /**
+     * @return the offset of the type in typed opcodes (iadd, ladd, fadd, dadd)
+     */
+    private static int offset(Type type) {
+
+        return type == Type.LONG ? 1 : type == Type.DOUBLE ? 3 : 0;
+    }
+
+    private static String internalName(Class<?> cls) {
+
+        return cls.getName().replace('.', '/');
+    }
+
+    private static String descriptor(Class<?> cls) {
+
+        if (cls == int.class)
+            return "I";
+        if (cls == long.class)
+            return "J";
+        if (cls == double.class)
+            return "D";
+        if (cls == boolean.class)
+            return "Z";
+        if (cls.isArray())
+            return internalName(cls);
+
+        return "L" + internalName(cls) + ";";
+    }
+
+    private static final class Label {
+
+        // Positions of the jump instructions
+        private final List<Integer> jumps = new ArrayList<>();
+        private int position;
+
+        void patch(byte[] code) {
+
+            for (int jump : jumps) {
+                int offset = position - jump;
+                code[jump + 1] = (byte) (offset >> 8);
+                code[jump + 2] = (byte) offset;
+            }
+        }
+    }
+
+    private static final class ConstantPool {
+
+        private static final int UTF8 = 1;
+        private static final int INTEGER = 3;
+        private static final int LONG = 5;
+        private static final int DOUBLE = 6;
+        private static final int CLASS = 7;
+        private static final int METHOD_REF = 10;
+        private static final int NAME_AND_TYPE = 12;
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> entries = new HashMap<>();
+        private int count = 1;
+
+        int utf8(String value) {
+
+            return entry(UTF8 + ":" + value, 1, () -> {
+                out.writeByte(UTF8);
+                out.writeUTF(value);
+            });
+        }
+
+        int integer(int value) {
+
+            return entry(INTEGER + ":" + value, 1, () -> {
+                out.writeByte(INTEGER);
+                out.writeInt(value);
+            });
+        }
+
+        int longConstant(long value) {
+
+            return entry(LONG + ":" + value, 2, () -> {
+                out.writeByte(LONG);
+                out.writeLong(value);
+            });
+        }
+
+        int doubleConstant(double value) {
+
+            return entry(DOUBLE + ":" + Double.doubleToRawLongBits(value), 2, () -> {
+                out.writeByte(DOUBLE);
+                out.writeDouble(value);
+            });
+        }
+
+        int classRef(String internalName) {
+
+            int name = utf8(internalName);
+            return entry(CLASS + ":" + internalName, 1, () -> {
+                out.writeByte(CLASS);
+                out.writeShort(name);
+            });
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+
+            int cls = classRef(owner);
+            int n = utf8(name);
+            int d = utf8(descriptor);
+            int nameAndType = entry(NAME_AND_TYPE + ":" + name + ":" + descriptor, 1, () -> {
+                out.writeByte(NAME_AND_TYPE);
+                out.writeShort(n);
+                out.writeShort(d);
+            });
+            return entry(METHOD_REF + ":" + owner + "." + name + descriptor, 1, () -> {
+                out.writeByte(METHOD_REF);
+                out.writeShort(cls);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        private int entry(String key, int slots, Writer writer) {
+
+            Integer index = entries.get(key);
+
+            if (index != null)
+                return index;
+
+            try {
+                writer.write();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            entries.put(key, count);
+            count += slots;
+            return count - slots;
+        }
+
+        void write(DataOutputStream target) throws IOException {
+
+            target.writeShort(count);
+            bytes.writeTo(target);
+        }
+
+        private interface Writer {
+
+            void write() throws IOException;
+        }
+    }
+}
@@ -0,0 +1,419 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.expr;
+
+import com.squareup.javapoet.TypeName;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recursive descent parser of a subset of Java expressions : int, long, double and boolean literals and parameters,
+ * arithmetic, comparison, logical and conditional operators, and the abs, min, max, pow, sqrt, exp, log, floor, ceil,
+ * sin, cos and tan functions of {@link Math}. Operators follow the precedence, promotion and typing rules of Java.
+ */
+public final class ExpressionParser {
+
+    private final String expr;
+    private final Map<String, Node.Param> params;
+    private int pos;
+
+    private ExpressionParser(String expr, Map<String, Node.Param> params) {
+
+        this.expr = expr;
+        this.params = params;
+    }
+
+    /**
+     * Parse an expression.
+     *
+     * @param expr       the expression
+     * @param params     the parameters of the expression, in the order of the arguments
+     * @param resultType the type the result of the expression is assigned to
+     * @return the interpretable expression
+     * @throws UnsupportedExpressionException if the expression, the type of a parameter or the result type isn't
+     *                                        supported, or if the expression isn't valid
+     */
+    public static InterpretedExpression parse(String expr, Map<String, TypeName> params, Class<?> resultType)
+            throws UnsupportedExpressionException {
+
+        Map<String, Node.Param> nodes = new HashMap<>();
+        Type[] types = new Type[params.size()];
+        int index = 0;
+        for (Map.Entry<String, TypeName> param : params.entrySet()) {
+            TypeName typeName = param.getValue();
+            Type type = typeOf(typeName);
+            if (type == null)
+                throw new UnsupportedExpressionException("Unsupported type " + typeName + " for parameter " + param.getKey());
+            types[index] = type;
+            nodes.put(param.getKey(), new Node.Param(type, index++, param.getKey()));
+        }
+
+        ExpressionParser parser = new ExpressionParser(expr, nodes);
+        Node root = parser.ternary();
+        parser.skipWhitespace();
+        if (parser.pos < expr.length())
+            throw parser.unsupported("Unexpected '" + expr.charAt(parser.pos) + "'");
+
+        return new InterpretedExpression(expr, root, types, assignmentType(root.type, resultType));
+    }
+
+    /**
+     * Assignment conversion of a value to the result type, without the narrowing of constants.
+     *
+     * @return the type of the converted value
+     */
+    private static Type assignmentType(Type type, Class<?> resultType) throws UnsupportedExpressionException {
+
+        Type target = Type.of(resultType);
+
+        if (target == null) {
+            // Boxing then widening reference conversion
+            if (resultType.isAssignableFrom(type.wrapper))
+                return type;
+        } else if (resultType.isPrimitive()) {
+            if (target == type || (type.isNumeric() && target.isNumeric() && target.ordinal() > type.ordinal()))
+                return target;
+        } else if (target == type) {
+            return target;
+        }
+
+        throw new UnsupportedExpressionException("Unsupported conversion from " + type + " to " + resultType.getName());
+    }
+
+    /**
+     * Wrapper types aren't supported : they are compared by reference, and can be null.
+     */
+    private static Type typeOf(TypeName type) {
+
+        for (Type t : Type.values())
+            if (type.equals(TypeName.get(t.primitive)))
+                return t;
+
+        return null;
+    }
+
+    private Node ternary() throws UnsupportedExpressionException {
+
+        Node condition = binary(0);
+        if (!accept("?"))
+            return condition;
+
+        Node then = ternary();
+        expect(":");
+        Node otherwise = ternary();
+
+        checkBoolean(condition, "?");
+        if ((then.type == Type.BOOLEAN) != (otherwise.type == Type.BOOLEAN))
+            throw unsupported("Incompatible types " + then.type + " and " + otherwise.type + " in conditional");
+
+        return new Node.Ternary(condition, then, otherwise);
+    }
+
+    // Binary operators by increasing precedence
+    private static final String[][] LEVELS = {
+            {"||"},
+            {"&&"},
+            {"==", "!="},
+            {"<=", ">=", "<", ">"},
+            {"+", "-"},
+            {"*", "/", "%"}
+    };
+
+    private static final Map<String, Node.Op> OPS = new HashMap<>();
+
+    static {
+        OPS.put("||", Node.Op.OR);
+        OPS.put("&&", Node.Op.AND);
+        OPS.put("==", Node.Op.EQ);
+        OPS.put("!=", Node.Op.NE);
+        OPS.put("<=", Node.Op.LE);
+        OPS.put(">=", Node.Op.GE);
+        OPS.put("<", Node.Op.LT);
+        OPS.put(">", Node.Op.GT);
+        OPS.put("+", Node.Op.ADD);
+        OPS.put("-", Node.Op.SUB);
+        OPS.put("*", Node.Op.MUL);
+        OPS.put("/", Node.Op.DIV);
+        OPS.put("%", Node.Op.REM);
+    }
+
+    private Node binary(int level) throws UnsupportedExpressionException {
+
+        if (level == LEVELS.length)
+            return unary();
+
+        Node left = binary(level + 1);
+        for (String op = operator(LEVELS[level]); op != null; op = operator(LEVELS[level]))
+            left = combine(OPS.get(op), op, left, binary(level + 1));
+
+        return left;
+    }
+
+    private Node combine(Node.Op op, String symbol, Node left, Node right) throws UnsupportedExpressionException {
+
+        switch (op) {
+            case AND:
+            case OR:
+                checkBoolean(left, symbol);
+                checkBoolean(right, symbol);
+                return new Node.Condition(op, left, right);
+            case EQ:
+            case NE:
+                if (left.type.isNumeric() != right.type.isNumeric())
+                    throw unsupported("Incompatible operand types " + left.type + " and " + right.type + " for " + symbol);
+                return new Node.Condition(op, left, right);
+            case LT:
+            case LE:
+            case GT:
+            case GE:
+                checkNumeric(left, symbol);
+                checkNumeric(right, symbol);
+                return new Node.Condition(op, left, right);
+            default:
+                checkNumeric(left, symbol);
+                checkNumeric(right, symbol);
+                return new Node.Arithmetic(op, left, right);
+        }
+    }
+
+    private Node unary() throws UnsupportedExpressionException {
+
+        skipWhitespace();
+        if (expr.startsWith("++", pos) || expr.startsWith("--", pos))
+            throw unsupported("Unsupported increment or decrement");
+        if (accept("!")) {
+            Node operand = unary();
+            checkBoolean(operand, "!");
+            return new Node.Unary(Node.Op.NOT, operand);
+        }
+        if (accept("-")) {
+            skipWhitespace();
+            // The literals -2147483648 and -9223372036854775808L only exist negated
+            if (pos < expr.length() && Character.isDigit(expr.charAt(pos)))
+                return number(true);
+            Node operand = unary();
+            checkNumeric(operand, "-");
+            return new Node.Unary(Node.Op.NEG, operand);
+        }
+        if (accept("+")) {
+            Node operand = unary();
+            checkNumeric(operand, "+");
+            return operand;
+        }
+
+        return primary();
+    }
+
+    private Node primary() throws UnsupportedExpressionException {
+
+        skipWhitespace();
+        if (pos == expr.length())
+            throw unsupported("Unexpected end of expression");
+
+        char c = expr.charAt(pos);
+        if (accept("(")) {
+            Node node = ternary();
+            expect(")");
+            return node;
+        }
+        if (Character.isDigit(c) || c == '.')
+            return number(false);
+        if (!Character.isJavaIdentifierStart(c))
+            throw unsupported("Unexpected '" + c + "'");
+
+        String name = identifier();
+        // Variables shadow types, including Math
+        Node.Param param = params.get(name);
+        if (param != null)
+            return param;
+
+        switch (name) {
+            case "true":
+                return new Node.Literal(Type.BOOLEAN, true);
+            case "false":
+                return new Node.Literal(Type.BOOLEAN, false);
+            case "Math":
+                expect(".");
+                skipWhitespace();
+                return call(identifier());
+        }
+
+        throw unsupported("Unknown identifier " + name);
+    }
+
+    private Node call(String name) throws UnsupportedExpressionException {
+
+        List<Node> arguments = new ArrayList<>();
+        expect("(");
+        if (!accept(")")) {
+            do {
+                arguments.add(ternary());
+            } while (accept(","));
+            expect(")");
+        }
+
+        int arity;
+        switch (name) {
+            case "abs":
+            case "sqrt":
+            case "exp":
+            case "log":
+            case "floor":
+            case "ceil":
+            case "sin":
+            case "cos":
+            case "tan":
+                arity = 1;
+                break;
+            case "min":
+            case "max":
+            case "pow":
+                arity = 2;
+                break;
+            default:
+                throw unsupported("Unsupported function Math." + name);
+        }
+        if (arguments.size() != arity)
+            throw unsupported("Math." + name + " takes " + arity + " arguments");
+
+        Type type = Type.INT;
+        for (Node argument : arguments) {
+            checkNumeric(argument, "Math." + name);
+            type = Type.promote(type, argument.type);
+        }
+
+        boolean overloaded = name.equals("abs") || name.equals("min") || name.equals("max");
+        return new Node.MathCall(overloaded ? type : Type.DOUBLE, name, arguments.toArray(new Node[0]));
+    }
+
+    private Node number(boolean negative) throws UnsupportedExpressionException {
+
+        int start = pos;
+        while (pos < expr.length() && (Character.isDigit(expr.charAt(pos)) || expr.charAt(pos) == '.'))
+            pos++;
+        boolean floating = expr.indexOf('.', start) >= 0 && expr.indexOf('.', start) < pos;
+        if (pos < expr.length() && (expr.charAt(pos) == 'e' || expr.charAt(pos) == 'E')) {
+            floating = true;
+            pos++;
+            if (pos < expr.length() && (expr.charAt(pos) == '+' || expr.charAt(pos) == '-'))
+                pos++;
+            while (pos < expr.length() && Character.isDigit(expr.charAt(pos)))
+                pos++;
+        }
+
+        String literal = (negative ? "-" : "") + expr.substring(start, pos);
+        char suffix = pos < expr.length() ? Character.toLowerCase(expr.charAt(pos)) : 0;
+        try {
+            if (suffix == 'd') {
+                pos++;
+                return new Node.Literal(Type.DOUBLE, Double.parseDouble(literal));
+            }
+            if (floating)
+                return new Node.Literal(Type.DOUBLE, Double.parseDouble(literal));
+            // Octal, hexadecimal, binary and underscored literals are left to javac
+            if (literal.length() > (negative ? 2 : 1) && literal.charAt(negative ? 1 : 0) == '0')
+                throw unsupported("Unsupported literal " + literal);
+            if (suffix == 'l') {
+                pos++;
+                return new Node.Literal(Type.LONG, Long.parseLong(literal));
+            }
+            return new Node.Literal(Type.INT, Integer.parseInt(literal));
+        } catch (NumberFormatException e) {
+            throw unsupported("Invalid literal " + literal);
+        }
+    }
+
+    private String identifier() throws UnsupportedExpressionException {
+
+        int start = pos;
+        if (pos == expr.length() || !Character.isJavaIdentifierStart(expr.charAt(pos)))
+            throw unsupported("Expected identifier");
+        while (pos < expr.length() && Character.isJavaIdentifierPart(expr.charAt(pos)))
+            pos++;
+
+        return expr.substring(start, pos);
+    }
+
+    /**
+     * @return the first of the operators found at the current position, null if none
+     */
+    private String operator(String[] ops) {
+
+        skipWhitespace();
+        for (String op : ops) {
+            if (!expr.startsWith(op, pos))
+                continue;
+            // Don't mistake a part of <=, <<, ++, ... for a shorter operator
+            int end = pos + op.length();
+            if (op.length() == 1 && end < expr.length() && (expr.charAt(end) == '=' || expr.charAt(end) == op.charAt(0)))
+                continue;
+            pos = end;
+            return op;
+        }
+
+        return null;
+    }
+
+    private boolean accept(String token) {
+
+        skipWhitespace();
+        if (!expr.startsWith(token, pos))
+            return false;
+        pos += token.length();
+        return true;
+    }
+
+    private void expect(String token) throws UnsupportedExpressionException {
+
+        if (!accept(token))
+            throw unsupported("Expected '" + token + "'");
+    }
+
+    private void skipWhitespace() {
+
+        while (pos < expr.length() && Character.isWhitespace(expr.charAt(pos)))
+            pos++;
+    }
+
+    private void checkNumeric(Node node, String op) throws UnsupportedExpressionException {
+
+        if (!node.type.isNumeric())
+            throw unsupported("Bad operand type " + node.type + " for " + op);
+    }
+
+    private void checkBoolean(Node node, String op) throws UnsupportedExpressionException {
+
+        if (node.type != Type.BOOLEAN)
+            throw unsupported("Bad operand type " + node.type + " for " + op);
+    }
+
+    private UnsupportedExpressionException unsupported(String message) {
+
+        return new UnsupportedExpressionException(message + " at " + pos + " in '" + expr + "'");
+    }
+}
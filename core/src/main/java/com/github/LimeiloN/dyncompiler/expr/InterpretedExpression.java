@@ -0,0 +1,103 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.expr;
+
+/**
+ * An expression evaluated by walking its tree, without generating any class.
+ * <p>
+ * Arguments are checked and converted like a reflective call to the equivalent compiled method would : primitive
+ * parameters accept widened values.
+ */
+public final class InterpretedExpression {
+
+    private final String expr;
+    final Node root;
+    final Type[] params;
+    final Type resultType;
+
+    InterpretedExpression(String expr, Node root, Type[] params, Type resultType) {
+
+        this.expr = expr;
+        this.root = root;
+        this.params = params;
+        this.resultType = resultType;
+    }
+
+    /**
+     * Evaluates the expression.
+     *
+     * @param args the arguments, in the order of the parameters
+     * @return the result of the expression, boxed
+     * @throws IllegalArgumentException if the arguments don't match the parameters of the expression
+     * @throws ArithmeticException      on an integer division by zero
+     */
+    public Object eval(Object... args) {
+
+        if (args.length != params.length)
+            throw new IllegalArgumentException("Wrong number of arguments : " + args.length + " expected " + params.length);
+
+        for (int i = 0; i < args.length; i++)
+            checkArgument(i, args[i]);
+
+        switch (resultType) {
+            case INT:
+                return root.evalInt(args);
+            case LONG:
+                return root.evalLong(args);
+            case DOUBLE:
+                return root.evalDouble(args);
+            default:
+                return root.evalBoolean(args);
+        }
+    }
+
+    private void checkArgument(int index, Object arg) {
+
+        Type param = params[index];
+
+        if (arg == null)
+            throw new IllegalArgumentException("Argument " + index + " : null for a " + param.primitive.getName());
+
+        if (param == Type.BOOLEAN ? arg instanceof Boolean : widens(arg.getClass(), param))
+            return;
+
+        throw new IllegalArgumentException("Argument " + index + " : " + arg.getClass().getName() + " can't be converted to " + param.primitive.getName());
+    }
+
+    private static boolean widens(Class<?> cls, Type param) {
+
+        if (cls == Byte.class || cls == Short.class || cls == Integer.class)
+            return true;
+        if (cls == Long.class)
+            return param != Type.INT;
+        return (cls == Float.class || cls == Double.class) && param == Type.DOUBLE;
+    }
+
+    @Override
+    public String toString() {
+
+        return expr;
+    }
+}
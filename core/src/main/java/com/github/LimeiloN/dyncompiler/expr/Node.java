@@ -0,0 +1,460 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.expr;
+
+/**
+ * A typed node of an expression tree. Each node is evaluated through the method of its own type, numeric nodes can
+ * also be evaluated as any wider numeric type.
+ */
+abstract class Node {
+
+    enum Op {
+        ADD, SUB, MUL, DIV, REM,
+        LT, LE, GT, GE, EQ, NE,
+        AND, OR,
+        NEG, NOT
+    }
+
+    final Type type;
+
+    Node(Type type) {
+
+        this.type = type;
+    }
+
+    int evalInt(Object[] args) {
+
+        throw new IllegalStateException(type + " evaluated as int");
+    }
+
+    long evalLong(Object[] args) {
+
+        return evalInt(args);
+    }
+
+    double evalDouble(Object[] args) {
+
+        return type == Type.LONG ? evalLong(args) : evalInt(args);
+    }
+
+    boolean evalBoolean(Object[] args) {
+
+        throw new IllegalStateException(type + " evaluated as boolean");
+    }
+
+    static final class Literal extends Node {
+
+        final Object value;
+
+        Literal(Type type, Object value) {
+
+            super(type);
+            this.value = value;
+        }
+
+        @Override
+        int evalInt(Object[] args) {
+
+            return (Integer) value;
+        }
+
+        @Override
+        long evalLong(Object[] args) {
+
+            return ((Number) value).longValue();
+        }
+
+        @Override
+        double evalDouble(Object[] args) {
+
+            return ((Number) value).doubleValue();
+        }
+
+        @Override
+        boolean evalBoolean(Object[] args) {
+
+            return (Boolean) value;
+        }
+    }
+
+    /**
+     * A parameter, read from the arguments already checked against the parameter types.
+     */
+    static final class Param extends Node {
+
+        final int index;
+        final String name;
+
+        Param(Type type, int index, String name) {
+
+            super(type);
+            this.index = index;
+            this.name = name;
+        }
+
+        @Override
+        int evalInt(Object[] args) {
+
+            return ((Number) args[index]).intValue();
+        }
+
+        @Override
+        long evalLong(Object[] args) {
+
+            return type == Type.INT ? evalInt(args) : ((Number) args[index]).longValue();
+        }
+
+        @Override
+        double evalDouble(Object[] args) {
+
+            return type == Type.DOUBLE ? ((Number) args[index]).doubleValue() : evalLong(args);
+        }
+
+        @Override
+        boolean evalBoolean(Object[] args) {
+
+            return (Boolean) args[index];
+        }
+    }
+
+    static final class Unary extends Node {
+
+        final Op op;
+        final Node operand;
+
+        Unary(Op op, Node operand) {
+
+            super(operand.type);
+            this.op = op;
+            this.operand = operand;
+        }
+
+        @Override
+        int evalInt(Object[] args) {
+
+            return -operand.evalInt(args);
+        }
+
+        @Override
+        long evalLong(Object[] args) {
+
+            return type == Type.INT ? evalInt(args) : -operand.evalLong(args);
+        }
+
+        @Override
+        double evalDouble(Object[] args) {
+
+            return type == Type.DOUBLE ? -operand.evalDouble(args) : evalLong(args);
+        }
+
+        @Override
+        boolean evalBoolean(Object[] args) {
+
+            return !operand.evalBoolean(args);
+        }
+    }
+
+    /**
+     * Arithmetic operators, the operands are promoted to the type of the node.
+     */
+    static final class Arithmetic extends Node {
+
+        final Op op;
+        final Node left;
+        final Node right;
+
+        Arithmetic(Op op, Node left, Node right) {
+
+            super(Type.promote(left.type, right.type));
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        int evalInt(Object[] args) {
+
+            int l = left.evalInt(args);
+            int r = right.evalInt(args);
+
+            switch (op) {
+                case ADD:
+                    return l + r;
+                case SUB:
+                    return l - r;
+                case MUL:
+                    return l * r;
+                case DIV:
+                    return l / r;
+                default:
+                    return l % r;
+            }
+        }
+
+        @Override
+        long evalLong(Object[] args) {
+
+            if (type == Type.INT)
+                return evalInt(args);
+
+            long l = left.evalLong(args);
+            long r = right.evalLong(args);
+
+            switch (op) {
+                case ADD:
+                    return l + r;
+                case SUB:
+                    return l - r;
+                case MUL:
+                    return l * r;
+                case DIV:
+                    return l / r;
+                default:
+                    return l % r;
+            }
+        }
+
+        @Override
+        double evalDouble(Object[] args) {
+
+            if (type != Type.DOUBLE)
+                return evalLong(args);
+
+            double l = left.evalDouble(args);
+            double r = right.evalDouble(args);
+
+            switch (op) {
+                case ADD:
+                    return l + r;
+                case SUB:
+                    return l - r;
+                case MUL:
+                    return l * r;
+                case DIV:
+                    return l / r;
+                default:
+                    return l % r;
+            }
+        }
+    }
+
+    /**
+     * Comparison and logical operators.
+     */
+    static final class Condition extends Node {
+
+        final Op op;
+        final Node left;
+        final Node right;
+        // Type the operands are compared as
+        final Type operandType;
+
+        Condition(Op op, Node left, Node right) {
+
+            super(Type.BOOLEAN);
+            this.op = op;
+            this.left = left;
+            this.right = right;
+            this.operandType = Type.promote(left.type, right.type);
+        }
+
+        @Override
+        boolean evalBoolean(Object[] args) {
+
+            switch (op) {
+                case AND:
+                    return left.evalBoolean(args) && right.evalBoolean(args);
+                case OR:
+                    return left.evalBoolean(args) || right.evalBoolean(args);
+            }
+
+            int cmp;
+            switch (operandType) {
+                case BOOLEAN:
+                    boolean b = left.evalBoolean(args) == right.evalBoolean(args);
+                    return op == Op.EQ ? b : !b;
+                case DOUBLE:
+                    // Not Double.compare : NaN compares false and -0.0 == 0.0
+                    double dl = left.evalDouble(args);
+                    double dr = right.evalDouble(args);
+                    switch (op) {
+                        case LT:
+                            return dl < dr;
+                        case LE:
+                            return dl <= dr;
+                        case GT:
+                            return dl > dr;
+                        case GE:
+                            return dl >= dr;
+                        case EQ:
+                            return dl == dr;
+                        default:
+                            return dl != dr;
+                    }
+                case LONG:
+                    cmp = Long.compare(left.evalLong(args), right.evalLong(args));
+                    break;
+                default:
+                    cmp = Integer.compare(left.evalInt(args), right.evalInt(args));
+            }
+
+            switch (op) {
+                case LT:
+                    return cmp < 0;
+                case LE:
+                    return cmp <= 0;
+                case GT:
+                    return cmp > 0;
+                case GE:
+                    return cmp >= 0;
+                case EQ:
+                    return cmp == 0;
+                default:
+                    return cmp != 0;
+            }
+        }
+    }
+
+    static final class Ternary extends Node {
+
+        final Node condition;
+        final Node then;
+        final Node otherwise;
+
+        Ternary(Node condition, Node then, Node otherwise) {
+
+            super(then.type == Type.BOOLEAN ? Type.BOOLEAN : Type.promote(then.type, otherwise.type));
+            this.condition = condition;
+            this.then = then;
+            this.otherwise = otherwise;
+        }
+
+        @Override
+        int evalInt(Object[] args) {
+
+            return condition.evalBoolean(args) ? then.evalInt(args) : otherwise.evalInt(args);
+        }
+
+        @Override
+        long evalLong(Object[] args) {
+
+            return condition.evalBoolean(args) ? then.evalLong(args) : otherwise.evalLong(args);
+        }
+
+        @Override
+        double evalDouble(Object[] args) {
+
+            return condition.evalBoolean(args) ? then.evalDouble(args) : otherwise.evalDouble(args);
+        }
+
+        @Override
+        boolean evalBoolean(Object[] args) {
+
+            return condition.evalBoolean(args) ? then.evalBoolean(args) : otherwise.evalBoolean(args);
+        }
+    }
+
+    /**
+     * A call to a static method of {@link Math}. abs, min and max keep the (promoted) type of their arguments, the
+     * other functions take and return doubles.
+     */
+    static final class MathCall extends Node {
+
+        final String name;
+        final Node[] arguments;
+
+        MathCall(Type type, String name, Node[] arguments) {
+
+            super(type);
+            this.name = name;
+            this.arguments = arguments;
+        }
+
+        @Override
+        int evalInt(Object[] args) {
+
+            switch (name) {
+                case "abs":
+                    return Math.abs(arguments[0].evalInt(args));
+                case "min":
+                    return Math.min(arguments[0].evalInt(args), arguments[1].evalInt(args));
+                default:
+                    return Math.max(arguments[0].evalInt(args), arguments[1].evalInt(args));
+            }
+        }
+
+        @Override
+        long evalLong(Object[] args) {
+
+            if (type == Type.INT)
+                return evalInt(args);
+
+            switch (name) {
+                case "abs":
+                    return Math.abs(arguments[0].evalLong(args));
+                case "min":
+                    return Math.min(arguments[0].evalLong(args), arguments[1].evalLong(args));
+                default:
+                    return Math.max(arguments[0].evalLong(args), arguments[1].evalLong(args));
+            }
+        }
+
+        @Override
+        double evalDouble(Object[] args) {
+
+            if (type != Type.DOUBLE)
+                return evalLong(args);
+
+            double a = arguments[0].evalDouble(args);
+
+            switch (name) {
+                case "abs":
+                    return Math.abs(a);
+                case "min":
+                    return Math.min(a, arguments[1].evalDouble(args));
+                case "max":
+                    return Math.max(a, arguments[1].evalDouble(args));
+                case "pow":
+                    return Math.pow(a, arguments[1].evalDouble(args));
+                case "sqrt":
+                    return Math.sqrt(a);
+                case "exp":
+                    return Math.exp(a);
+                case "log":
+                    return Math.log(a);
+                case "floor":
+                    return Math.floor(a);
+                case "ceil":
+                    return Math.ceil(a);
+                case "sin":
+                    return Math.sin(a);
+                case "cos":
+                    return Math.cos(a);
+                default:
+                    return Math.tan(a);
+            }
+        }
+    }
+}
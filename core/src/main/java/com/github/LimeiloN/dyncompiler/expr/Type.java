@@ -0,0 +1,70 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.expr;
+
+/**
+ * The types of the interpreted subset of Java expressions.
+ */
+enum Type {
+
+    INT(int.class, Integer.class),
+    LONG(long.class, Long.class),
+    DOUBLE(double.class, Double.class),
+    BOOLEAN(boolean.class, Boolean.class);
+
+    final Class<?> primitive;
+    final Class<?> wrapper;
+
+    Type(Class<?> primitive, Class<?> wrapper) {
+
+        this.primitive = primitive;
+        this.wrapper = wrapper;
+    }
+
+    boolean isNumeric() {
+
+        return this != BOOLEAN;
+    }
+
+    /**
+     * @return the type of the primitive or wrapper class, null if it isn't one of the interpreted types
+     */
+    static Type of(Class<?> cls) {
+
+        for (Type type : values())
+            if (type.primitive == cls || type.wrapper == cls)
+                return type;
+
+        return null;
+    }
+
+    /**
+     * Binary numeric promotion.
+     */
+    static Type promote(Type a, Type b) {
+
+        return a.ordinal() > b.ordinal() ? a : b;
+    }
+}
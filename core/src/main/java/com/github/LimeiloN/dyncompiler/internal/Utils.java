@@ -32,6 +32,9 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Locale;
 
 public final class Utils {
@@ -167,4 +170,92 @@ public final class Utils {
                 ? (getCanonicalName(className.enclosingClassName()) + '.' + className.simpleName())
                 : (className.packageName().isEmpty() ? className.simpleName() : className.packageName() + '.' + className.simpleName());
     }
+
+    /**
+     * Trims a script and collapses every run of whitespaces outside of string and char literals and comments into a
+     * single space, or a single line break if the run contains one (so line comments keep their meaning).
+     * Literals and comments are kept verbatim, a quote inside a comment doesn't start a literal.
+     * Two scripts that only differ by their indentation have the same normalized form.
+     *
+     * @param script the script to normalize
+     * @return the normalized script
+     */
+    public static String normalizeScript(String script) {
+
+        StringBuilder sb = new StringBuilder(script.length());
+        char quote = 0;
+        // '/' inside a line comment, '*' inside a block comment
+        char comment = 0;
+        char space = 0;
+
+        for (int i = 0; i < script.length(); i++) {
+            char c = script.charAt(i);
+
+            if (quote != 0) {
+                sb.append(c);
+                if (c == '\\' && i + 1 < script.length())
+                    sb.append(script.charAt(++i));
+                else if (c == quote)
+                    quote = 0;
+            } else if (comment == '/') {
+                if (c == '\n' || c == '\r') {
+                    // The line break ends the comment, it starts a run of whitespaces
+                    comment = 0;
+                    space = '\n';
+                } else {
+                    sb.append(c);
+                }
+            } else if (comment == '*') {
+                sb.append(c);
+                if (c == '*' && i + 1 < script.length() && script.charAt(i + 1) == '/') {
+                    sb.append(script.charAt(++i));
+                    comment = 0;
+                }
+            } else if (Character.isWhitespace(c)) {
+                if (sb.length() > 0 && space != '\n')
+                    space = c == '\n' || c == '\r' ? '\n' : ' ';
+            } else {
+                if (space != 0)
+                    sb.append(space);
+                space = 0;
+                if (c == '"' || c == '\'')
+                    quote = c;
+                else if (c == '/' && i + 1 < script.length() && (script.charAt(i + 1) == '/' || script.charAt(i + 1) == '*'))
+                    comment = script.charAt(++i);
+                sb.append(c);
+                if (comment != 0)
+                    sb.append(comment);
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * @param contents the strings to hash, in order
+     * @return the hexadecimal SHA-256 hash of the UTF-8 encoded contents
+     */
+    public static String sha256(String... contents) {
+
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+
+        for (String content : contents) {
+            digest.update(content.getBytes(StandardCharsets.UTF_8));
+            // Separator, so ("ab", "c") and ("a", "bc") don't collide
+            digest.update((byte) 0);
+        }
+
+        StringBuilder sb = new StringBuilder(64);
+        for (byte b : digest.digest())
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+
+        return sb.toString();
+    }
 }
@@ -0,0 +1,137 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.metrics;
+
+import java.lang.ref.Cleaner;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process wide counters of the classes defined by the class loaders of this library. Loaders and hidden classes are
+ * tracked until they're garbage collected, so the live counts drop as classes get unloaded.
+ */
+public final class ClassLoadingMetrics {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private static final AtomicLong liveLoaders = new AtomicLong();
+    private static final AtomicLong liveClasses = new AtomicLong();
+    private static final AtomicLong definedClasses = new AtomicLong();
+    private static final AtomicLong reloads = new AtomicLong();
+
+    private ClassLoadingMetrics() {
+
+    }
+
+    /**
+     * Tracks a class loader until it's collected, along with the classes it defines.
+     *
+     * @param loader the loader, typically called from its constructor
+     * @return the counter the loader reports its classes to
+     */
+    public static LoaderMetrics track(ClassLoader loader) {
+
+        LoaderMetrics metrics = new LoaderMetrics();
+        liveLoaders.incrementAndGet();
+        CLEANER.register(loader, metrics::unloaded);
+        return metrics;
+    }
+
+    /**
+     * Tracks a hidden class, which is unloaded independently of its loader.
+     *
+     * @param cls the hidden class
+     */
+    public static void hiddenClassDefined(Class<?> cls) {
+
+        definedClasses.incrementAndGet();
+        liveClasses.incrementAndGet();
+        CLEANER.register(cls, liveClasses::decrementAndGet);
+    }
+
+    /**
+     * Counts a reload of the classes of a {@link com.github.LimeiloN.dyncompiler.ReloadingClassLoader}.
+     */
+    public static void reloaded() {
+
+        reloads.incrementAndGet();
+    }
+
+    /**
+     * @return the number of tracked class loaders not collected yet
+     */
+    public static long getLiveClassLoaders() {
+
+        return liveLoaders.get();
+    }
+
+    /**
+     * @return the number of classes defined by the tracked loaders and not unloaded yet
+     */
+    public static long getLiveClasses() {
+
+        return liveClasses.get();
+    }
+
+    /**
+     * @return the number of classes defined since the start of the process
+     */
+    public static long getDefinedClasses() {
+
+        return definedClasses.get();
+    }
+
+    /**
+     * @return the number of reloads since the start of the process
+     */
+    public static long getReloadCount() {
+
+        return reloads.get();
+    }
+
+    /**
+     * The classes defined by one loader, all unloaded at once with it.
+     */
+    public static final class LoaderMetrics {
+
+        private final AtomicLong classes = new AtomicLong();
+
+        private LoaderMetrics() {
+
+        }
+
+        public void classDefined() {
+
+            classes.incrementAndGet();
+            definedClasses.incrementAndGet();
+            liveClasses.incrementAndGet();
+        }
+
+        private void unloaded() {
+
+            liveLoaders.decrementAndGet();
+            liveClasses.addAndGet(-classes.get());
+        }
+    }
+}
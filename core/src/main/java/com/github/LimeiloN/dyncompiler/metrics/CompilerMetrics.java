@@ -0,0 +1,121 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.metrics;
+
+import com.github.LimeiloN.dyncompiler.cache.CacheStats;
+import com.github.LimeiloN.dyncompiler.compilers.LatencyHistogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The compilation counters of a {@link com.github.LimeiloN.dyncompiler.DynCompiler}. Recording is lock free.
+ */
+public final class CompilerMetrics {
+
+    private final AtomicLong compilations = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong bytecodeBytes = new AtomicLong();
+    private final AtomicLong bytecodeCacheHits = new AtomicLong();
+    private final AtomicLong bytecodeCacheMisses = new AtomicLong();
+    // Backend name -> latencies
+    private final ConcurrentMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+    /**
+     * @param backend the name of the compiler backend
+     * @param nanos   the duration of the compilation
+     * @param bytes   the size of the generated class files
+     */
+    public void recordCompilation(String backend, long nanos, long bytes) {
+
+        compilations.incrementAndGet();
+        bytecodeBytes.addAndGet(bytes);
+        latency(backend).record(nanos);
+    }
+
+    /**
+     * @param backend the name of the compiler backend
+     * @param nanos   the duration of the failed compilation
+     */
+    public void recordFailure(String backend, long nanos) {
+
+        compilations.incrementAndGet();
+        failures.incrementAndGet();
+        latency(backend).record(nanos);
+    }
+
+    public void recordBytecodeCacheHit() {
+
+        bytecodeCacheHits.incrementAndGet();
+    }
+
+    public void recordBytecodeCacheMiss() {
+
+        bytecodeCacheMisses.incrementAndGet();
+    }
+
+    /**
+     * Reports latencies recorded elsewhere, such as the ones of the backends of an
+     * {@link com.github.LimeiloN.dyncompiler.compilers.AdaptiveJavaCompiler}.
+     *
+     * @param name      the name of the latencies in the snapshots
+     * @param histogram the latencies
+     */
+    public void addLatency(String name, LatencyHistogram histogram) {
+
+        latencies.put(name, histogram);
+    }
+
+    private LatencyHistogram latency(String backend) {
+
+        return latencies.computeIfAbsent(backend, b -> new LatencyHistogram());
+    }
+
+    /**
+     * @param evalCache   the statistics of the cache of compiled expressions
+     * @param tieredCache the statistics of the cache of tiered expressions
+     * @return the current values of the counters, along with the class loading counters of the process
+     */
+    public MetricsSnapshot snapshot(CacheStats evalCache, CacheStats tieredCache) {
+
+        Map<String, LatencyStats> stats = new TreeMap<>();
+        latencies.forEach((name, histogram) -> stats.put(name, LatencyStats.of(histogram)));
+
+        return new MetricsSnapshot(compilations.get(),
+                                   failures.get(),
+                                   bytecodeBytes.get(),
+                                   stats,
+                                   evalCache,
+                                   tieredCache,
+                                   new CacheStats(bytecodeCacheHits.get(), bytecodeCacheMisses.get(), 0),
+                                   ClassLoadingMetrics.getLiveClasses(),
+                                   ClassLoadingMetrics.getLiveClassLoaders(),
+                                   ClassLoadingMetrics.getDefinedClasses(),
+                                   ClassLoadingMetrics.getReloadCount());
+    }
+}
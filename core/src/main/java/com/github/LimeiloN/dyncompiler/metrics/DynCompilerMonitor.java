@@ -0,0 +1,134 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Implements the {@link DynCompilerMXBean} over snapshots of the metrics, each attribute reads a fresh snapshot.
+ */
+public final class DynCompilerMonitor implements DynCompilerMXBean {
+
+    private final Supplier<MetricsSnapshot> metrics;
+
+    public DynCompilerMonitor(Supplier<MetricsSnapshot> metrics) {
+
+        this.metrics = metrics;
+    }
+
+    @Override
+    public long getCompileCount() {
+
+        return metrics.get().getCompileCount();
+    }
+
+    @Override
+    public long getFailedCompileCount() {
+
+        return metrics.get().getFailedCompileCount();
+    }
+
+    @Override
+    public long getBytecodeBytes() {
+
+        return metrics.get().getBytecodeBytes();
+    }
+
+    @Override
+    public Map<String, Long> getCompileCountByBackend() {
+
+        return latencies(LatencyStats::getCount);
+    }
+
+    @Override
+    public Map<String, Double> getCompileLatencyP50() {
+
+        return latencies(LatencyStats::getP50);
+    }
+
+    @Override
+    public Map<String, Double> getCompileLatencyP90() {
+
+        return latencies(LatencyStats::getP90);
+    }
+
+    @Override
+    public Map<String, Double> getCompileLatencyP99() {
+
+        return latencies(LatencyStats::getP99);
+    }
+
+    private <V> Map<String, V> latencies(Function<LatencyStats, V> value) {
+
+        Map<String, V> values = new TreeMap<>();
+        metrics.get().getCompileLatencies().forEach((backend, stats) -> values.put(backend, value.apply(stats)));
+        return values;
+    }
+
+    @Override
+    public double getEvalCacheHitRate() {
+
+        return metrics.get().getEvalCacheStats().getHitRate();
+    }
+
+    @Override
+    public double getTieredCacheHitRate() {
+
+        return metrics.get().getTieredCacheStats().getHitRate();
+    }
+
+    @Override
+    public double getBytecodeCacheHitRate() {
+
+        return metrics.get().getBytecodeCacheStats().getHitRate();
+    }
+
+    @Override
+    public long getLiveClasses() {
+
+        return ClassLoadingMetrics.getLiveClasses();
+    }
+
+    @Override
+    public long getLiveClassLoaders() {
+
+        return ClassLoadingMetrics.getLiveClassLoaders();
+    }
+
+    @Override
+    public long getDefinedClasses() {
+
+        return ClassLoadingMetrics.getDefinedClasses();
+    }
+
+    @Override
+    public long getReloadCount() {
+
+        return ClassLoadingMetrics.getReloadCount();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.metrics;
+
+import com.github.LimeiloN.dyncompiler.compilers.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable snapshot of a {@link LatencyHistogram}, in milliseconds.
+ */
+public final class LatencyStats {
+
+    private final long count;
+    private final double mean;
+    private final double p50;
+    private final double p90;
+    private final double p99;
+
+    public LatencyStats(long count, double mean, double p50, double p90, double p99) {
+
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+    }
+
+    public static LatencyStats of(LatencyHistogram histogram) {
+
+        return new LatencyStats(histogram.getCount(),
+                                histogram.getMean(TimeUnit.MILLISECONDS),
+                                histogram.getPercentile(50) / 1e6,
+                                histogram.getPercentile(90) / 1e6,
+                                histogram.getPercentile(99) / 1e6);
+    }
+
+    public long getCount() {
+
+        return count;
+    }
+
+    public double getMean() {
+
+        return mean;
+    }
+
+    public double getP50() {
+
+        return p50;
+    }
+
+    public double getP90() {
+
+        return p90;
+    }
+
+    public double getP99() {
+
+        return p99;
+    }
+
+    @Override
+    public String toString() {
+
+        return "LatencyStats{count=" + count + ", mean=" + mean + "ms, p50=" + p50 + "ms, p90=" + p90 + "ms, p99=" + p99 + "ms}";
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Guillaume "LimeiloN" Anthouard
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.github.LimeiloN.dyncompiler.metrics;
+
+import com.github.LimeiloN.dyncompiler.cache.CacheStats;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the metrics of a {@link com.github.LimeiloN.dyncompiler.DynCompiler}. Class loading
+ * counters are process wide, see {@link ClassLoadingMetrics}.
+ */
+public final class MetricsSnapshot {
+
+    private final long compileCount;
+    private final long failedCompileCount;
+    private final long bytecodeBytes;
+    private final Map<String, LatencyStats> compileLatencies;
+    private final CacheStats evalCacheStats;
+    private final CacheStats tieredCacheStats;
+    private final CacheStats bytecodeCacheStats;
+    private final long liveClasses;
+    private final long liveClassLoaders;
+    private final long definedClasses;
+    private final long reloadCount;
+
+    MetricsSnapshot(long compileCount, long failedCompileCount, long bytecodeBytes,
+                    Map<String, LatencyStats> compileLatencies,
+                    CacheStats evalCacheStats, CacheStats tieredCacheStats, CacheStats bytecodeCacheStats,
+                    long liveClasses, long liveClassLoaders, long definedClasses, long reloadCount) {
+
+        this.compileCount = compileCount;
+        this.failedCompileCount = failedCompileCount;
+        this.bytecodeBytes = bytecodeBytes;
+        this.compileLatencies = Collections.unmodifiableMap(compileLatencies);
+        this.evalCacheStats = evalCacheStats;
+        this.tieredCacheStats = tieredCacheStats;
+        this.bytecodeCacheStats = bytecodeCacheStats;
+        this.liveClasses = liveClasses;
+        this.liveClassLoaders = liveClassLoaders;
+        this.definedClasses = definedClasses;
+        this.reloadCount = reloadCount;
+    }
+
+    /**
+     * @return the number of compilations, failed ones included, not counting the bytecode cache hits
+     */
+    public long getCompileCount() {
+
+        return compileCount;
+    }
+
+    public long getFailedCompileCount() {
+
+        return failedCompileCount;
+    }
+
+    /**
+     * @return the total size of the class files generated by the compilations
+     */
+    public long getBytecodeBytes() {
+
+        return bytecodeBytes;
+    }
+
+    /**
+     * @return the latencies of the compilations, by backend name
+     */
+    public Map<String, LatencyStats> getCompileLatencies() {
+
+        return compileLatencies;
+    }
+
+    public CacheStats getEvalCacheStats() {
+
+        return evalCacheStats;
+    }
+
+    /**
+     * @return the statistics of the cache of tiered expressions, all zeros if tiered evaluation is disabled
+     */
+    public CacheStats getTieredCacheStats() {
+
+        return tieredCacheStats;
+    }
+
+    /**
+     * @return the hits and misses of the bytecode cache, all zeros if it's disabled
+     */
+    public CacheStats getBytecodeCacheStats() {
+
+        return bytecodeCacheStats;
+    }
+
+    public long getLiveClasses() {
+
+        return liveClasses;
+    }
+
+    public long getLiveClassLoaders() {
+
+        return liveClassLoaders;
+    }
+
+    public long getDefinedClasses() {
+
+        return definedClasses;
+    }
+
+    public long getReloadCount() {
+
+        return reloadCount;
+    }
+
+    @Override
+    public String toString() {
+
+        return "MetricsSnapshot{compiles=" + compileCount + ", failed=" + failedCompileCount + ", bytecodeBytes=" + bytecodeBytes
+               + ", latencies=" + compileLatencies + ", evalCache=" + evalCacheStats + ", tieredCache=" + tieredCacheStats
+               + ", bytecodeCache=" + bytecodeCacheStats + ", liveClasses=" + liveClasses + ", liveClassLoaders=" + liveClassLoaders
+               + ", definedClasses=" + definedClasses + ", reloads=" + reloadCount + "}";
+    }
+}
@@ -24,7 +24,9 @@
  */
 package com.github.LimeiloN.dyncompiler.stores;
 
+import com.github.LimeiloN.dyncompiler.events.DefineClassEvent;
 import com.github.LimeiloN.dyncompiler.internal.Utils;
+import com.github.LimeiloN.dyncompiler.metrics.ClassLoadingMetrics;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -38,6 +40,7 @@ public final class ResourceStoreClassLoader extends ClassLoader {
     private static final Logger log = LogManager.getLogger(ResourceStoreClassLoader.class);
 
     private final ResourceStore[] stores;
+    private final ClassLoadingMetrics.LoaderMetrics metrics = ClassLoadingMetrics.track(this);
 
     public ResourceStoreClassLoader(final ClassLoader pParent, final ResourceStore[] pStores) {
         super(pParent);
@@ -53,7 +56,12 @@ public final class ResourceStoreClassLoader extends ClassLoader {
                 final byte[] clazzBytes = store.read(Utils.convertClassToResourcePath(name));
                 if (clazzBytes != null) {
                     log.debug(getId() + " found class: " + name + " (" + clazzBytes.length + " bytes)");
-                    return defineClass(name, clazzBytes, 0, clazzBytes.length);
+                    final DefineClassEvent event = new DefineClassEvent();
+                    event.begin();
+                    final Class<?> clazz = defineClass(name, clazzBytes, 0, clazzBytes.length);
+                    event.defined(name, clazzBytes.length, this, false);
+                    metrics.classDefined();
+                    return clazz;
                 }
             }
         }
@@ -1,10 +1,22 @@
 module com.github.LimeiloN.dyncompiler {
 
     requires java.compiler;
+    requires java.management;
+    // Optional, for the javac task listeners and the Flight Recorder events, so JRE only and minimal images resolve
+    requires static jdk.compiler;
+    requires static jdk.jfr;
     requires com.squareup.javapoet;
     requires org.apache.logging.log4j;
 
     exports com.github.LimeiloN.dyncompiler;
+    exports com.github.LimeiloN.dyncompiler.cache;
+    exports com.github.LimeiloN.dyncompiler.compilers;
+    exports com.github.LimeiloN.dyncompiler.events;
+    exports com.github.LimeiloN.dyncompiler.expr;
+    exports com.github.LimeiloN.dyncompiler.metrics;
+    exports com.github.LimeiloN.dyncompiler.problems;
+    exports com.github.LimeiloN.dyncompiler.readers;
+    exports com.github.LimeiloN.dyncompiler.stores;
 
     opens com.github.LimeiloN.dyncompiler.internal to
             com.github.LimeiloN.dyncompiler.ecj,
@@ -25,14 +25,58 @@
 
 package com.github.LimeiloN.dyncompiler;
 
+import com.github.LimeiloN.dyncompiler.cache.ByteBufferPool;
+import com.github.LimeiloN.dyncompiler.cache.CacheStats;
+import com.github.LimeiloN.dyncompiler.compilers.AbstractJavaCompiler;
+import com.github.LimeiloN.dyncompiler.compilers.AdaptiveJavaCompiler;
+import com.github.LimeiloN.dyncompiler.compilers.CompilationResult;
+import com.github.LimeiloN.dyncompiler.compilers.JavaCompiler;
+import com.github.LimeiloN.dyncompiler.compilers.JavaCompilerSettings;
+import com.github.LimeiloN.dyncompiler.compilers.JavacJavaCompiler;
+import com.github.LimeiloN.dyncompiler.metrics.ClassLoadingMetrics;
+import com.github.LimeiloN.dyncompiler.metrics.MetricsSnapshot;
+import com.github.LimeiloN.dyncompiler.readers.ResourceReader;
+import com.github.LimeiloN.dyncompiler.stores.ResourceStore;
 import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.MethodSpec;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import javax.lang.model.element.Modifier;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.tools.Diagnostic;
+import javax.tools.ToolProvider;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
 
 public class DynCompilerTest {
 
@@ -144,9 +188,9 @@ public class DynCompilerTest {
                                     compiler.evalExp(source,
                                                      new EvalContext<>(Double.TYPE)
                                                          .addParam("x", ClassName.DOUBLE)
-                                                         .addParam("b", ClassName.DOUBLE)),
-                                    2.0,
-                                    2.0));
+                                                         .addParam("b", ClassName.DOUBLE),
+                                                     2.0,
+                                                     2.0));
         } catch (CompilerException | InvocationTargetException e) {
             Assertions.fail(e);
         }
@@ -207,4 +251,754 @@ public class DynCompilerTest {
             Assertions.fail(e);
         }
     }
+
+    @Test
+    public void testEvalCache() {
+
+        try {
+            DynCompiler compiler = new DynCompiler();
+            Assertions.assertEquals(4, (int) compiler.evalExp("2 + 2", int.class));
+            Assertions.assertEquals(4, (int) compiler.evalExp("2  +   2", int.class));
+            Assertions.assertEquals(1, compiler.getEvalCacheStats().getMissCount());
+            Assertions.assertEquals(1, compiler.getEvalCacheStats().getHitCount());
+
+            // A quote in a comment must neither collapse the spaces of a literal nor keep others
+            Assertions.assertEquals(" a  b", compiler.evalScript("// it's\nreturn \" a  b\";", String.class));
+            Assertions.assertEquals(" a b", compiler.evalScript("// it's\nreturn \" a b\";", String.class));
+            Assertions.assertEquals(" a  b", compiler.evalScript("/* \" */ return \" a  b\";", String.class));
+            Assertions.assertEquals(" a b", compiler.evalScript("/* \" */ return \" a b\";", String.class));
+            Assertions.assertEquals(5, compiler.getEvalCacheStats().getMissCount());
+            Assertions.assertEquals(" a b", compiler.evalScript("/* \" */ \t return \" a b\";", String.class));
+            Assertions.assertEquals(2, compiler.getEvalCacheStats().getHitCount());
+
+            DynCompiler uncached = new DynCompiler(new DynCompilerSettings().setEvalCacheMaximumSize(0));
+            uncached.evalExp("2 + 2", int.class);
+            uncached.evalExp("2 + 2", int.class);
+            Assertions.assertEquals(0, uncached.getEvalCacheStats().getHitCount());
+            Assertions.assertEquals(2, uncached.getEvalCacheStats().getEvictionCount());
+        } catch (CompilerException | InvocationTargetException e) {
+            Assertions.fail(e);
+        }
+    }
+
+    @Test
+    public void testPreparedExpression() {
+
+        try {
+            DynCompiler compiler = new DynCompiler();
+            CompiledExpression<Integer> exp = compiler.prepare("a * b",
+                                                               new EvalContext<>(Integer.TYPE)
+                                                                   .addParam("a", ClassName.INT)
+                                                                   .addParam("b", ClassName.INT));
+
+            Assertions.assertEquals(2, exp.getParameterCount());
+            for (int i = 0; i < 10; i++)
+                Assertions.assertEquals(i * 3, (int) exp.eval(i, 3));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> exp.eval(1));
+        } catch (CompilerException | InvocationTargetException e) {
+            Assertions.fail(e);
+        }
+    }
+
+    @Test
+    public void testCompileFunction() {
+
+        try {
+            DynCompiler compiler = new DynCompiler();
+            DoubleBinaryOperator op = compiler.compileFunction(DoubleBinaryOperator.class,
+                                                               "return x * y + 1;",
+                                                               new EvalContext<>(Double.TYPE)
+                                                                   .addParam("x", ClassName.DOUBLE)
+                                                                   .addParam("y", ClassName.DOUBLE));
+            Assertions.assertEquals(7.0, op.applyAsDouble(2.0, 3.0));
+
+            @SuppressWarnings("unchecked")
+            Function<String, Integer> length = compiler.compileFunction(Function.class,
+                                                                        "return s.length();",
+                                                                        new EvalContext<>(Integer.TYPE)
+                                                                            .addParam("s", ClassName.get(String.class)));
+            Assertions.assertEquals(5, (int) length.apply("hello"));
+
+            Assertions.assertThrows(IllegalArgumentException.class,
+                                    () -> compiler.compileFunction(DoubleUnaryOperator.class,
+                                                                   "return 1.0;",
+                                                                   new EvalContext<>(Double.TYPE)));
+        } catch (CompilerException e) {
+            Assertions.fail(e);
+        }
+    }
+
+    @Test
+    public void testPrimitiveExpressions() {
+
+        try {
+            DynCompiler compiler = new DynCompiler();
+
+            DoubleExpression price = compiler.prepareDouble("qty * unit * (1 - discount)", "qty", "unit", "discount");
+            double[] row = {2, 10, 0.5};
+            Assertions.assertEquals(10.0, price.eval(row));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> price.eval(new double[]{2, 10}));
+
+            BooleanExpression filter = compiler.prepareBoolean("x > 10 && y != 0", "x", "y");
+            Assertions.assertTrue(filter.eval(new double[]{11, 1}));
+            Assertions.assertFalse(filter.eval(new double[]{11, 0}));
+
+            // Integer arguments keep integer division and the full precision of longs
+            IntBooleanExpression even = compiler.prepareIntBoolean("a / 2 * 2 == a", "a");
+            Assertions.assertTrue(even.eval(new int[]{4}));
+            Assertions.assertFalse(even.eval(new int[]{5}));
+            LongBooleanExpression above = compiler.prepareLongBoolean("a > b", "a", "b");
+            Assertions.assertTrue(above.eval(new long[]{(1L << 60) + 1, 1L << 60}));
+
+            Assertions.assertEquals(1L << 40, compiler.prepareLong("1L << n", "n").eval(new long[]{40}));
+            Assertions.assertEquals(7, compiler.prepareInt("a % b", "a", "b").eval(new int[]{17, 10}));
+
+            // Fixed arity interfaces take their arguments directly
+            DoubleBinaryOperator product = compiler.prepareFunction(DoubleBinaryOperator.class, "qty * price", "qty", "price");
+            Assertions.assertEquals(6.0, product.applyAsDouble(2, 3));
+            LongPredicate odd = compiler.prepareFunction(LongPredicate.class, "n % 2 != 0", "n");
+            Assertions.assertTrue(odd.test((1L << 60) + 1));
+            Assertions.assertFalse(odd.test(1L << 60));
+
+            Assertions.assertThrows(IllegalArgumentException.class,
+                                    () -> compiler.prepareFunction(DoubleBinaryOperator.class, "x", "x"));
+            Assertions.assertThrows(IllegalArgumentException.class,
+                                    () -> compiler.prepareDouble("x + x", "x", "x"));
+            Assertions.assertThrows(IllegalArgumentException.class,
+                                    () -> compiler.prepareFunction(Function.class, "x", "x"));
+        } catch (CompilerException e) {
+            Assertions.fail(e);
+        }
+    }
+
+    @Test
+    public void testConcurrentEval() throws InterruptedException, ExecutionException, CompilerException {
+
+        DynCompiler compiler = new DynCompiler();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                // Half of the expressions are shared between two tasks
+                String expr = (i % 8) + " * 2";
+                results.add(executor.submit(() -> compiler.evalExp(expr, int.class)));
+            }
+
+            for (int i = 0; i < 16; i++)
+                Assertions.assertEquals((i % 8) * 2, (int) results.get(i).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try (DynCompiler compiler = new DynCompiler(new DynCompilerSettings().setAsyncExecutor(executor))) {
+
+            Assertions.assertEquals(6, (int) compiler.evalAsync("x * 2",
+                                                                new EvalContext<>(Integer.TYPE).addParam("x", ClassName.INT),
+                                                                3).get());
+
+            Assertions.assertThrows(ExecutionException.class, () -> compiler.evalAsync("x +", new EvalContext<>(Integer.TYPE)).get());
+
+            // Block the only thread, so the next task stays in the queue until cancelled
+            CountDownLatch latch = new CountDownLatch(1);
+            executor.submit(() -> {
+                latch.await();
+                return null;
+            });
+            CompletableFuture<Integer> cancelled = compiler.evalAsync("1 + 1", int.class);
+            Assertions.assertTrue(cancelled.cancel(true));
+            latch.countDown();
+
+            executor.submit(() -> null).get();
+            Assertions.assertThrows(CancellationException.class, cancelled::join);
+            Assertions.assertEquals(2, compiler.getEvalCacheStats().getMissCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCloseWithAsyncTasks() throws Exception {
+
+        DynCompiler compiler = new DynCompiler(new DynCompilerSettings().setAsyncThreads(1));
+        CompletableFuture<Boolean> gate = new CompletableFuture<>();
+        EvalContext<Boolean> ctx = new EvalContext<>(Boolean.TYPE).addParam("gate", ClassName.get(CompletableFuture.class));
+        // join keeps waiting when interrupted, but sets the interrupt status again
+        String expr = "(Boolean) gate.join() && !Thread.currentThread().isInterrupted()";
+
+        CompletableFuture<Boolean> running = compiler.evalAsync(expr, ctx, gate);
+        while (gate.getNumberOfDependents() == 0 && !running.isDone())
+            Thread.sleep(10);
+        CompletableFuture<Boolean> queued = compiler.evalAsync(expr, ctx, gate);
+
+        // Only let the running task go once close has cancelled the queued one
+        Thread releaser = new Thread(() -> {
+            try {
+                queued.handle((result, e) -> null).get(10, TimeUnit.SECONDS);
+            } catch (Exception ignored) {
+            }
+            gate.complete(true);
+        });
+        releaser.start();
+        compiler.close();
+
+        // close waited for the running task, which wasn't interrupted
+        Assertions.assertTrue(running.isDone());
+        Assertions.assertTrue(running.join());
+        Assertions.assertTrue(queued.isCancelled());
+        Assertions.assertThrows(CompletionException.class, () -> compiler.evalAsync("1 + 1", int.class).join());
+        releaser.join();
+    }
+
+    @Test
+    public void testCloseSessionPool() throws Exception {
+
+        CompilerSessionPool pool = new CompilerSessionPool(ToolProvider.getSystemJavaCompiler(), 1);
+        CompilerSession session = pool.acquire();
+
+        // The pool is full, the waiting caller must be woken up when the pool is closed
+        CompletableFuture<CompilerSession> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.acquire();
+            } catch (CompilerException e) {
+                throw new CompletionException(e);
+            }
+        });
+        Thread.sleep(50);
+        pool.close();
+
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> waiting.get(10, TimeUnit.SECONDS));
+        Assertions.assertTrue(e.getCause() instanceof IllegalStateException);
+        // Released after close, the session is closed instead of being pooled again
+        pool.release(session);
+        Assertions.assertThrows(IllegalStateException.class, pool::acquire);
+    }
+
+    @Test
+    public void testDiagnosticsPerCompilation() throws CompilerException {
+
+        AtomicInteger streamed = new AtomicInteger();
+        DynCompiler compiler = new DynCompiler(new DynCompilerSettings()
+                                                   .setMaxRetainedDiagnostics(2)
+                                                   .setDiagnosticListener(d -> streamed.incrementAndGet()));
+
+        CompilerException first = Assertions.assertThrows(CompilerException.class,
+                                                          () -> compiler.evalScript("int a = x1; int b = x2; int c = x3; return 0;", int.class));
+        Assertions.assertEquals(2, first.getDiagnostics().size());
+        Assertions.assertEquals(3, streamed.get());
+
+        CompilerException second = Assertions.assertThrows(CompilerException.class, () -> compiler.evalExp("y", int.class));
+        Assertions.assertEquals(1, second.getDiagnostics().size());
+        Assertions.assertEquals(4, streamed.get());
+    }
+
+    @Test
+    public void testScopedClassLoaders() throws Exception {
+
+        DynCompiler compiler = new DynCompiler(new DynCompilerSettings().setClassLoaderGroupSize(2));
+
+        Class<?> a = compiler.compileAndLoad(ClassName.get("scoped", "A"), "package scoped; public class A {}");
+        Class<?> b = compiler.compileAndLoad(ClassName.get("scoped", "B"), "package scoped; public class B {}");
+        Class<?> c = compiler.compileAndLoad(ClassName.get("scoped", "C"), "package scoped; public class C {}");
+
+        Assertions.assertSame(a.getClassLoader(), b.getClassLoader());
+        Assertions.assertNotSame(a.getClassLoader(), c.getClassLoader());
+        Assertions.assertSame(a.getClassLoader().getParent(), c.getClassLoader().getParent());
+
+        // The same class can be compiled again in another group
+        Class<?> a2 = compiler.compileAndLoad(ClassName.get("scoped", "A"), "package scoped; public class A {}");
+        Assertions.assertNotSame(a, a2);
+    }
+
+    @Test
+    public void testHiddenClasses() throws Exception {
+
+        DynCompiler compiler = new DynCompiler(new DynCompilerSettings().setHiddenClasses(true));
+
+        Assertions.assertEquals(4, (int) compiler.evalExp("2 + 2", int.class));
+
+        DoubleUnaryOperator square = compiler.compileFunction(DoubleUnaryOperator.class, "return x * x;",
+                                                              new EvalContext<>(Double.TYPE).addParam("x", ClassName.DOUBLE));
+        Assertions.assertEquals(9.0, square.applyAsDouble(3.0));
+
+        Method m = compiler.compileMethod(MethodSpec.methodBuilder("twice")
+                                                  .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                                                  .returns(int.class)
+                                                  .addParameter(int.class, "a")
+                                                  .addStatement("return a * 2")
+                                                  .build());
+        Assertions.assertEquals(6, m.invoke(null, 3));
+        if (HiddenClassDefiner.isSupported())
+            // Hidden class names aren't valid binary names
+            Assertions.assertTrue(m.getDeclaringClass().getName().contains("/"));
+
+        // Anonymous classes refer to the generated class by name, they fall back to a regular loader
+        Assertions.assertEquals(1, (int) compiler.evalScript("return new java.util.function.IntSupplier() { public int getAsInt() { return 1; } }.getAsInt();", int.class));
+    }
+
+    @Test
+    public void testBytecodeCache() throws Exception {
+
+        Path dir = Files.createTempDirectory("dyncompiler-cache");
+        // Raw types make javac report a note, only when it actually runs
+        String source = "package cached; public class Raw { public static int size() { java.util.List l = new java.util.ArrayList(); l.add(1); return l.size(); } }";
+
+        AtomicInteger firstDiagnostics = new AtomicInteger();
+        DynCompiler first = new DynCompiler(new DynCompilerSettings()
+                                                .setBytecodeCacheDirectory(dir)
+                                                .setDiagnosticListener(d -> firstDiagnostics.incrementAndGet()));
+        Class<?> compiled = first.compileAndLoad(ClassName.get("cached", "Raw"), source);
+        Assertions.assertEquals(1, compiled.getMethod("size").invoke(null));
+        Assertions.assertTrue(firstDiagnostics.get() > 0);
+
+        try (Stream<Path> files = Files.list(dir)) {
+            Assertions.assertEquals(1, files.count());
+        }
+
+        AtomicInteger secondDiagnostics = new AtomicInteger();
+        DynCompiler second = new DynCompiler(new DynCompilerSettings()
+                                                 .setBytecodeCacheDirectory(dir)
+                                                 .setDiagnosticListener(d -> secondDiagnostics.incrementAndGet()));
+        Class<?> cached = second.compileAndLoad(ClassName.get("cached", "Raw"), source);
+        Assertions.assertEquals(1, cached.getMethod("size").invoke(null));
+        Assertions.assertEquals(0, secondDiagnostics.get());
+
+        // The constant of the retained class is inlined, a cached user would keep the first value
+        for (int value = 1; value <= 2; value++) {
+            DynCompiler retaining = new DynCompiler(new DynCompilerSettings().setBytecodeCacheDirectory(dir).setRetainClassFiles(true));
+            retaining.compile(ClassName.get("cached", "Constants"), "package cached; public class Constants { public static final int VALUE = " + value + "; }");
+            Class<?> user = retaining.compileAndLoad(ClassName.get("cached", "User"),
+                                                     "package cached; public class User { public static int value() { return Constants.VALUE; } }");
+            Assertions.assertEquals(value, user.getMethod("value").invoke(null));
+        }
+    }
+
+    @Test
+    public void testWarmUpManifest() throws Exception {
+
+        Path manifest = Files.createTempFile("dyncompiler", ".manifest");
+        String script = "String s = \"a\\tb\";\nreturn s.length() + x;";
+
+        try (DynCompiler recording = new DynCompiler(new DynCompilerSettings().setWarmUpManifest(manifest))) {
+            recording.evalExp("2 + 2", int.class);
+            recording.evalExp("2 + 2", int.class);
+            recording.evalScript(script, new EvalContext<>(Integer.TYPE).addParam("x", ClassName.INT), 1);
+        }
+        Assertions.assertEquals(2, Files.readAllLines(manifest).size());
+
+        DynCompiler compiler = new DynCompiler();
+        Assertions.assertEquals(2, compiler.warmUp(manifest));
+        Assertions.assertEquals(2, compiler.getEvalCacheStats().getMissCount());
+
+        Assertions.assertEquals(4, (int) compiler.evalExp("2 + 2", int.class));
+        Assertions.assertEquals(4, (int) compiler.evalScript(script, new EvalContext<>(Integer.TYPE).addParam("x", ClassName.INT), 1));
+        Assertions.assertEquals(2, compiler.getEvalCacheStats().getMissCount());
+
+        // Workers rejected by a saturated executor run on the caller
+        ExecutorService saturated = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new SynchronousQueue<>());
+        try (DynCompiler rejecting = new DynCompiler(new DynCompilerSettings().setCompilerPoolSize(4).setAsyncExecutor(saturated))) {
+            Assertions.assertEquals(2, rejecting.warmUp(manifest));
+        } finally {
+            saturated.shutdown();
+        }
+    }
+
+    @Test
+    public void testCompilerBackend() throws Exception {
+
+        DynCompiler compiler = new DynCompiler(new DynCompilerSettings().setCompilerBackend(new JavacJavaCompiler()));
+
+        Assertions.assertEquals(4, (int) compiler.evalExp("2 + 2", int.class));
+
+        DoubleUnaryOperator square = compiler.compileFunction(DoubleUnaryOperator.class, "return x * x;",
+                                                              new EvalContext<>(Double.TYPE).addParam("x", ClassName.DOUBLE));
+        Assertions.assertEquals(9.0, square.applyAsDouble(3.0));
+
+        Class<?> outer = compiler.compileAndLoad(ClassName.get("backend", "Outer"),
+                                                 "package backend; public class Outer { public static class Inner {} }");
+        Assertions.assertEquals("backend.Outer$Inner", outer.getDeclaredClasses()[0].getName());
+
+        CompilerException e = Assertions.assertThrows(CompilerException.class, () -> compiler.evalExp("y", int.class));
+        Assertions.assertEquals(1, e.getDiagnostics().size());
+        Assertions.assertEquals(Diagnostic.Kind.ERROR, e.getDiagnostics().get(0).getKind());
+    }
+
+    @Test
+    public void testAdaptiveCompilerBackend() throws Exception {
+
+        JavacJavaCompiler javac = new JavacJavaCompiler();
+        // Stands for a light backend that doesn't support interfaces
+        JavaCompiler light = new AbstractJavaCompiler() {
+
+            @Override
+            public JavaCompilerSettings createDefaultSettings() {
+
+                return javac.createDefaultSettings();
+            }
+
+            @Override
+            public CompilationResult compile(String[] paths, ResourceReader reader, ResourceStore store,
+                                             ClassLoader classLoader, JavaCompilerSettings settings) {
+
+                if (new String(reader.getBytes(paths[0])).contains("interface"))
+                    return javac.compile(new String[]{"missing.java"}, reader, store, classLoader, settings);
+                return javac.compile(paths, reader, store, classLoader, settings);
+            }
+        };
+        AdaptiveJavaCompiler adaptive = new AdaptiveJavaCompiler(light, javac);
+        DynCompiler compiler = new DynCompiler(new DynCompilerSettings().setCompilerBackend(adaptive).setDirectBytecode(false));
+
+        Assertions.assertEquals(4, (int) compiler.evalExp("2 + 2", int.class));
+        Assertions.assertEquals(1, adaptive.getLatency(light).getCount());
+        Assertions.assertEquals(0, adaptive.getLatency(javac).getCount());
+
+        Class<?> itf = compiler.compileAndLoad(ClassName.get("adaptive", "Itf"), "package adaptive; public interface Itf {}");
+        Assertions.assertTrue(itf.isInterface());
+        Assertions.assertEquals(1, adaptive.getUnsupportedCount(light));
+        Assertions.assertEquals(1, adaptive.getLatency(javac).getCount());
+
+        Assertions.assertThrows(CompilerException.class, () -> compiler.evalExp("y", int.class));
+        Assertions.assertEquals(1, adaptive.getUnsupportedCount(light));
+    }
+
+    @Test
+    public void testTieredEval() throws Exception {
+
+        DynCompiler compiler = new DynCompiler(new DynCompilerSettings().setTieredThreshold(3));
+
+        // Interpreted, nothing is compiled
+        Assertions.assertEquals(3, (int) compiler.evalExp("7 / 2", int.class));
+        Assertions.assertEquals(3.5, (double) compiler.evalExp("7 / 2.0", double.class));
+        Assertions.assertEquals(5L, (long) compiler.evalExp("Math.max(2, 5L)", long.class));
+        Assertions.assertEquals(-2147483648, (int) compiler.evalExp("-2147483648", int.class));
+        Assertions.assertEquals(0, compiler.getEvalCacheStats().getMissCount());
+
+        EvalContext<Double> ctx = new EvalContext<>(Double.TYPE).addParam("x", ClassName.DOUBLE).addParam("n", ClassName.INT);
+        TieredExpression<Double> tiered = compiler.prepareTiered("x > 0 && n != 0 ? x * n + n % 3 : -x", ctx);
+        Assertions.assertSame(tiered, compiler.prepareTiered("x > 0 && n != 0 ? x * n + n % 3 : -x", ctx));
+        Assertions.assertEquals(-1.5, (double) tiered.eval(1.5, 0));
+        Assertions.assertEquals(9.5, (double) tiered.eval(1.5, 5));
+        Assertions.assertFalse(tiered.isCompiled());
+
+        // Hot, compiled in the background
+        Assertions.assertEquals(3.5, (double) tiered.eval(2.5, 1));
+        tiered.compilation().get();
+        Assertions.assertTrue(tiered.isCompiled());
+        Assertions.assertEquals(9.5, (double) tiered.eval(1.5, 5));
+        Assertions.assertEquals(3, tiered.getInvocationCount());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tiered.eval(1.5, 5L));
+
+        // Runtime exceptions are thrown the same way as the compiled expression
+        EvalContext<Integer> div = new EvalContext<>(Integer.TYPE).addParam("n", ClassName.INT);
+        InvocationTargetException e = Assertions.assertThrows(InvocationTargetException.class,
+                                                              () -> compiler.evalExp("1 / n", div, 0));
+        Assertions.assertTrue(e.getCause() instanceof ArithmeticException);
+
+        // Unsupported by the interpreter, compiled right away
+        TieredExpression<Integer> length = compiler.prepareTiered("\"abc\".length()", new EvalContext<>(Integer.TYPE));
+        Assertions.assertTrue(length.isCompiled());
+        Assertions.assertEquals(3, (int) length.eval());
+        Assertions.assertThrows(CompilerException.class, () -> compiler.evalExp("2 + \"", int.class));
+
+        // Wrappers are compared by reference and can be null, the interpreter leaves them to javac
+        DynCompiler javac = new DynCompiler(new DynCompilerSettings().setDirectBytecode(false));
+        EvalContext<Object> boxed = new EvalContext<>(Object.class).addParam("a", ClassName.INT.box()).addParam("b", ClassName.INT.box());
+        Object[][] args = {{1000, 1000}, {1, 1}, {null, 2}};
+        for (String expr : new String[]{"a == b", "a"}) {
+            TieredExpression<Object> interpreted = compiler.prepareTiered(expr, boxed);
+            Assertions.assertTrue(interpreted.isCompiled());
+            for (Object[] a : args)
+                Assertions.assertEquals(javac.prepare(expr, boxed).eval(a), interpreted.eval(a), expr);
+        }
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+
+        long defined = ClassLoadingMetrics.getDefinedClasses();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.github.LimeiloN.dyncompiler:type=DynCompiler,name=\"metrics\"");
+
+        try (DynCompiler compiler = new DynCompiler(new DynCompilerSettings().setMBeanName("metrics"))) {
+            compiler.evalExp("2 + 2", int.class);
+            compiler.evalExp("2 + 2", int.class);
+            Assertions.assertThrows(CompilerException.class, () -> compiler.evalExp("y", int.class));
+
+            MetricsSnapshot metrics = compiler.getMetrics();
+            Assertions.assertEquals(2, metrics.getCompileCount());
+            Assertions.assertEquals(1, metrics.getFailedCompileCount());
+            Assertions.assertTrue(metrics.getBytecodeBytes() > 0);
+            Assertions.assertEquals(2, metrics.getCompileLatencies().get("javac").getCount());
+            Assertions.assertEquals(1.0 / 3, metrics.getEvalCacheStats().getHitRate(), 1e-9);
+            Assertions.assertTrue(metrics.getDefinedClasses() > defined);
+            Assertions.assertTrue(metrics.getLiveClassLoaders() > 0);
+
+            Assertions.assertEquals(2L, server.getAttribute(name, "CompileCount"));
+            Assertions.assertNotNull(server.getAttribute(name, "CompileLatencyP99"));
+        }
+        Assertions.assertFalse(server.isRegistered(name));
+
+        long reloads = ClassLoadingMetrics.getReloadCount();
+        new ReloadingClassLoader(getClass().getClassLoader()).handleNotification();
+        Assertions.assertEquals(reloads + 1, ClassLoadingMetrics.getReloadCount());
+    }
+
+    @Test
+    public void testFlightRecorderEvents() throws Exception {
+
+        Path dump = Files.createTempFile("dyncompiler", ".jfr");
+        DynCompiler compiler = new DynCompiler();
+
+        try (Recording recording = new Recording()) {
+            recording.enable("com.github.LimeiloN.dyncompiler.Compile");
+            recording.enable("com.github.LimeiloN.dyncompiler.CompilePhase");
+            recording.enable("com.github.LimeiloN.dyncompiler.DefineClass");
+            recording.start();
+            compiler.compileAndLoad(ClassName.get("jfr", "Recorded"), "package jfr; public class Recorded {}");
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        RecordedEvent compile = events.stream()
+                                      .filter(e -> e.getEventType().getName().endsWith(".Compile"))
+                                      .findFirst()
+                                      .orElseThrow(AssertionError::new);
+        Assertions.assertEquals("javac", compile.getString("compiler"));
+        Assertions.assertEquals(1, compile.getInt("classCount"));
+        Assertions.assertTrue(compile.getLong("bytecodeBytes") > 0);
+        Assertions.assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().endsWith(".CompilePhase")
+                                                            && "GENERATE".equals(e.getString("phase"))));
+        Assertions.assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().endsWith(".DefineClass")
+                                                            && "jfr.Recorded".equals(e.getString("className"))));
+    }
+
+    @Test
+    public void testDirectBytecode() throws Exception {
+
+        DynCompiler compiler = new DynCompiler(new DynCompilerSettings().setDirectBytecode(true));
+        DynCompiler javac = new DynCompiler();
+        EvalContext<Object> ctx = new EvalContext<>(Object.class).addParam("x", ClassName.DOUBLE)
+                                                                   .addParam("n", ClassName.INT)
+                                                                   .addParam("l", ClassName.LONG);
+        String[] exprs = {"x * n + l", "n / 2 * 2 == n ? l % 3 : -x", "x < 0.5 || !(x >= 1) && n != 2", "Math.max(n, l) - Math.pow(x, 2)",
+                          "2147483647 + n", "-0.0 * x", "x == x", "(double) n"};
+        Object[][] args = {{1.5, 3, 10L}, {Double.NaN, -4, Long.MIN_VALUE}, {-0.0, 2, -1L}};
+
+        for (String expr : exprs) {
+            CompiledExpression<Object> expected = javac.prepare(expr, ctx);
+            CompiledExpression<Object> emitted = compiler.prepare(expr, ctx);
+            for (Object[] a : args)
+                Assertions.assertEquals(expected.eval(a), emitted.eval(a), expr);
+        }
+        // The cast isn't supported and was compiled by javac
+        Assertions.assertEquals(7, compiler.getMetrics().getCompileLatencies().get("bytecode").getCount());
+        Assertions.assertEquals(1, compiler.getMetrics().getCompileLatencies().get("javac").getCount());
+
+        // Wrappers are compared by reference and can be null, these expressions are compiled by javac
+        EvalContext<Object> boxed = new EvalContext<>(Object.class).addParam("a", ClassName.INT.box()).addParam("b", ClassName.INT.box());
+        Assertions.assertEquals(false, compiler.evalExp("a == b", boxed, 1000, 1000));
+        Assertions.assertNull(compiler.evalExp("a", boxed, null, 1));
+        Assertions.assertEquals(3, compiler.getMetrics().getCompileLatencies().get("javac").getCount());
+
+        DoubleUnaryOperator f = compiler.prepare("x > 0 ? Math.sqrt(x) : 0", new EvalContext<>(Double.TYPE).addParam("x", ClassName.DOUBLE))
+                                        .as(DoubleUnaryOperator.class);
+        Assertions.assertEquals(3.0, f.applyAsDouble(9));
+        Assertions.assertThrows(InvocationTargetException.class,
+                                () -> compiler.evalExp("n / 0", new EvalContext<>(Integer.TYPE).addParam("n", ClassName.INT), 1));
+    }
+
+    @Test
+    public void testKernel() throws Exception {
+
+        DynCompiler compiler = new DynCompiler();
+        Kernel kernel = compiler.compileKernel("x * n + 1", new EvalContext<>(Double.TYPE).addParam("x", ClassName.DOUBLE)
+                                                                                          .addParam("n", ClassName.LONG));
+        double[] x = new double[1000];
+        long[] n = new long[1000];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = i * 0.5;
+            n[i] = i % 7;
+        }
+
+        double[] out = new double[1000];
+        kernel.apply(new Object[]{x, n}, out);
+        for (int i = 0; i < out.length; i++)
+            Assertions.assertEquals(x[i] * n[i] + 1, out[i]);
+
+        double[] part = new double[1000];
+        kernel.apply(new Object[]{x, n}, part, 10, 20);
+        Assertions.assertEquals(0, part[9]);
+        Assertions.assertEquals(out[10], part[10]);
+        Assertions.assertEquals(out[19], part[19]);
+        Assertions.assertEquals(0, part[20]);
+
+        Assertions.assertSame(kernel, compiler.compileKernel("x * n + 1", new EvalContext<>(Double.TYPE).addParam("x", ClassName.DOUBLE)
+                                                                                                        .addParam("n", ClassName.LONG)));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> kernel.apply(new Object[]{x, new long[10]}, new double[1000]));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> kernel.apply(new Object[]{x}, out));
+        Assertions.assertThrows(ClassCastException.class, () -> kernel.apply(new Object[]{x, n}, new int[1000]));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                                () -> compiler.compileKernel("x", new EvalContext<>(Double.class).addParam("x", ClassName.DOUBLE)));
+
+        boolean[] flags = new boolean[3];
+        compiler.compileKernel("v > 1", new EvalContext<>(Boolean.TYPE).addParam("v", ClassName.INT))
+                .apply(new Object[]{new int[]{0, 2, 5}}, flags);
+        Assertions.assertArrayEquals(new boolean[]{false, true, true}, flags);
+    }
+
+    @Test
+    public void testConcurrentClassLoading() throws Exception {
+
+        Map<ClassName, String> sources = new HashMap<>();
+        for (int i = 0; i < 8; i++)
+            sources.put(ClassName.get("loading", "C" + i), "package loading; public class C" + i + " {}");
+
+        Map<String, CompiledObject> compiled = new DynCompiler().compile(sources);
+        DynamicClassLoader loader = new DynamicClassLoader(getClass().getClassLoader());
+        compiled.values().forEach(loader::addClass);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            List<Future<Class<?>>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String name = "loading.C" + (i % 8);
+                boolean direct = i % 2 == 1;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    // Direct calls to findClass race the ones of loadClass
+                    return direct ? loader.findClass(name) : loader.loadClass(name);
+                }));
+            }
+            start.countDown();
+
+            for (int i = 0; i < 64; i++)
+                Assertions.assertSame(results.get(i % 8).get(), results.get(i).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testByteBufferPool() throws Exception {
+
+        ByteBufferPool pool = new ByteBufferPool(1024, 4096, 8192);
+        ByteBuffer small = pool.acquire(10);
+        ByteBuffer medium = pool.acquire(3000);
+        Assertions.assertEquals(1024, small.capacity());
+        Assertions.assertEquals(4096, medium.capacity());
+        Assertions.assertEquals(5000, pool.acquire(5000).capacity());
+
+        medium.put((byte) 1);
+        pool.release(medium);
+        ByteBuffer reused = pool.acquire(4000);
+        Assertions.assertSame(medium, reused);
+        Assertions.assertEquals(0, reused.position());
+        Assertions.assertEquals(1, pool.getReuseCount());
+
+        // The pool is bounded by the total capacity of its buffers
+        pool.release(reused);
+        pool.release(ByteBuffer.allocate(4096));
+        Assertions.assertEquals(8192, pool.getPooledBytes());
+        pool.release(ByteBuffer.allocate(1024));
+        Assertions.assertEquals(8192, pool.getPooledBytes());
+
+        // Outputs returned to the caller stay readable once their classes are defined
+        CompiledObject output = new DynCompiler().compile(ClassName.get("pooled", "A"), "package pooled; public class A {}");
+        DynamicClassLoader loader = new DynamicClassLoader(getClass().getClassLoader());
+        loader.addClass(output);
+        Assertions.assertEquals("pooled.A", loader.loadClass("pooled.A").getName());
+        Assertions.assertEquals(output.getSize(), output.getBytes().length);
+        Assertions.assertEquals(0xCAFEBABE, output.getBuffer().getInt());
+    }
+
+    @Test
+    public void testCompileAgainstRetainedClasses() throws Exception {
+
+        DynCompiler compiler = new DynCompiler(new DynCompilerSettings().setRetainClassFiles(true));
+        compiler.compile(ClassName.get("shared", "Helper"),
+                         "package shared; public class Helper { public static class Inner { public static int twice(int x) { return 2 * x; } } }");
+
+        // Only the source of the user is compiled, the helper comes from the retained class files
+        Map<ClassName, String> sources = new HashMap<>();
+        sources.put(ClassName.get("user", "User"), "package user; public class User { public static int run() { return shared.Helper.Inner.twice(21); } }");
+        Map<String, CompiledObject> outputs = compiler.compile(sources);
+        Assertions.assertEquals(1, outputs.size());
+
+        Class<?> user = compiler.compileAndLoad(ClassName.get("user", "Other"),
+                                                "package user; import shared.Helper.Inner; public class Other { public static int run() { return Inner.twice(4); } }");
+        Assertions.assertEquals(8, user.getMethod("run").invoke(null));
+
+        DynCompiler forgetful = new DynCompiler();
+        forgetful.compile(ClassName.get("shared", "Helper"), "package shared; public class Helper {}");
+        Assertions.assertThrows(CompilerException.class,
+                                () -> forgetful.compile(ClassName.get("user", "User"), "package user; public class User { shared.Helper helper; }"));
+    }
+
+    @Test
+    public void testClassPathIndex() throws Exception {
+
+        DynCompiler compiler = new DynCompiler(new DynCompilerSettings().setDirectBytecode(false));
+        Assertions.assertEquals(4, (int) compiler.evalExp("2 + 2", int.class));
+        CacheStats first = compiler.getClassPathIndexStats();
+        Assertions.assertTrue(first.getMissCount() > 0);
+
+        // The second task resolves the same packages from the listings of the first one
+        Assertions.assertEquals("ab", compiler.evalExp("java.util.List.of(\"a\", \"b\").stream().reduce(\"\", String::concat)", String.class));
+        Assertions.assertTrue(compiler.getClassPathIndexStats().getHitCount() > first.getHitCount());
+
+        compiler.invalidateClassPathIndex();
+        Assertions.assertEquals(1, compiler.getClassPathIndexStats().getEvictionCount());
+        Assertions.assertEquals(6, (int) compiler.evalExp("3 + 3", int.class));
+
+        Assertions.assertNull(new DynCompiler(new DynCompilerSettings().setClassPathIndex(false)).getClassPathIndexStats());
+    }
+
+    @Test
+    public void testCompileIncremental() throws Exception {
+
+        DynCompiler compiler = new DynCompiler();
+        Map<ClassName, String> sources = new HashMap<>();
+        sources.put(ClassName.get("inc", "Rate"), "package inc; public class Rate { public static final int VALUE = 2; }");
+        sources.put(ClassName.get("inc", "Price"), "package inc; public class Price { public static int of(int x) { return x * Rate.VALUE; } }");
+        sources.put(ClassName.get("inc", "Name"), "package inc; public class Name { public static String get() { return \"a\"; } class Inner {} }");
+
+        Map<String, CompiledObject> first = compiler.compileIncremental(sources);
+        Assertions.assertEquals(4, first.size());
+
+        // Nothing changed
+        Map<String, CompiledObject> same = compiler.compileIncremental(sources);
+        for (String name : first.keySet())
+            Assertions.assertSame(first.get(name), same.get(name));
+
+        // The constant is inlined into Price, which is compiled again although its source didn't change
+        sources.put(ClassName.get("inc", "Rate"), "package inc; public class Rate { public static final int VALUE = 3; }");
+        Map<String, Class<?>> classes = compiler.compileAndLoadIncremental(sources);
+        Assertions.assertEquals(12, classes.get("inc.Price").getMethod("of", int.class).invoke(null, 4));
+        Assertions.assertEquals("a", classes.get("inc.Name").getMethod("get").invoke(null));
+
+        Map<String, CompiledObject> second = compiler.compileIncremental(sources);
+        Assertions.assertNotSame(first.get("inc.Price"), second.get("inc.Price"));
+        Assertions.assertSame(first.get("inc.Name"), second.get("inc.Name"));
+        Assertions.assertSame(first.get("inc.Name$Inner"), second.get("inc.Name$Inner"));
+
+        // A failed build keeps the previous one
+        sources.put(ClassName.get("inc", "Name"), "package inc; public class Name { oops }");
+        Assertions.assertThrows(CompilerException.class, () -> compiler.compileIncremental(sources));
+
+        // Removing a source compiles again the ones depending on it
+        sources.remove(ClassName.get("inc", "Name"));
+        sources.remove(ClassName.get("inc", "Rate"));
+        Assertions.assertThrows(CompilerException.class, () -> compiler.compileIncremental(sources));
+        sources.put(ClassName.get("inc", "Price"), "package inc; public class Price { public static int of(int x) { return x; } }");
+        Assertions.assertEquals(1, compiler.compileIncremental(sources).size());
+    }
 }
@@ -25,7 +25,7 @@
 
 package com.github.LimeiloN.dyncompiler.impl.ecj;
 
-import org.apache.commons.jci.problems.CompilationProblem;
+import com.github.LimeiloN.dyncompiler.problems.CompilationProblem;
 import org.eclipse.jdt.core.compiler.IProblem;
 
 /**
@@ -25,8 +25,29 @@
 package com.github.LimeiloN.dyncompiler.impl.ecj;
 
 import com.github.LimeiloN.dyncompiler.compilers.AbstractJavaCompiler;
+import com.github.LimeiloN.dyncompiler.compilers.JavaCompilerSettings;
+import com.github.LimeiloN.dyncompiler.events.CompileEvent;
 import com.github.LimeiloN.dyncompiler.internal.Utils;
+import com.github.LimeiloN.dyncompiler.problems.CompilationProblem;
 import com.github.LimeiloN.dyncompiler.readers.ResourceReader;
+import com.github.LimeiloN.dyncompiler.stores.ResourceStore;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jdt.core.compiler.IProblem;
+import org.eclipse.jdt.internal.compiler.ClassFile;
+import org.eclipse.jdt.internal.compiler.CompilationResult;
+import org.eclipse.jdt.internal.compiler.Compiler;
+import org.eclipse.jdt.internal.compiler.DefaultErrorHandlingPolicies;
+import org.eclipse.jdt.internal.compiler.ICompilerRequestor;
+import org.eclipse.jdt.internal.compiler.IErrorHandlingPolicy;
+import org.eclipse.jdt.internal.compiler.IProblemFactory;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
+import org.eclipse.jdt.internal.compiler.env.ICompilationUnit;
+import org.eclipse.jdt.internal.compiler.env.INameEnvironment;
+import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
+import org.eclipse.jdt.internal.compiler.problem.DefaultProblemFactory;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -37,7 +58,6 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.StringTokenizer;
 
-
 /**
  * Eclipse compiler implemenation
  *
@@ -45,7 +65,7 @@ import java.util.StringTokenizer;
  */
 public final class EclipseJavaCompiler extends AbstractJavaCompiler {
 
-    private final Log log = LogFactory.getLog(EclipseJavaCompiler.class);
+    private static final Logger log = LogManager.getLogger(EclipseJavaCompiler.class);
     private final EclipseJavaCompilerSettings defaultSettings;
 
     public EclipseJavaCompiler() {
@@ -120,7 +140,7 @@ public final class EclipseJavaCompiler extends AbstractJavaCompiler {
     }
 
 
-    public CompilationResult compile(
+    public com.github.LimeiloN.dyncompiler.compilers.CompilationResult compile(
             final String[] pSourceFiles,
             final ResourceReader pReader,
             final ResourceStore pStore,
@@ -128,6 +148,8 @@ public final class EclipseJavaCompiler extends AbstractJavaCompiler {
             final JavaCompilerSettings pSettings
             ) {
 
+        final CompileEvent event = CompileEvent.begin("ecj", pSourceFiles);
+        final ResourceStore store = event.record(pStore);
         final Map<String, String> settingsMap = new EclipseJavaCompilerSettings(pSettings).toNativeSettings();
 
         final Collection<CompilationProblem> problems = new ArrayList<CompilationProblem>();
@@ -139,6 +161,9 @@ public final class EclipseJavaCompiler extends AbstractJavaCompiler {
             if (pReader.isAvailable(sourceFile)) {
                 compilationUnits[i] = new CompilationUnit(pReader, sourceFile);
                 log.debug("compiling " + sourceFile);
+                if (event.isEnabled()) {
+                    event.sourceRead(pReader.getBytes(sourceFile).length);
+                }
             } else {
                 // log.error("source not found " + sourceFile);
 
@@ -189,7 +214,8 @@ public final class EclipseJavaCompiler extends AbstractJavaCompiler {
         if (problems.size() > 0) {
             final CompilationProblem[] result = new CompilationProblem[problems.size()];
             problems.toArray(result);
-            return new CompilationResult(result);
+            event.complete(result);
+            return new com.github.LimeiloN.dyncompiler.compilers.CompilationResult(result);
         }
 
         final IErrorHandlingPolicy policy = DefaultErrorHandlingPolicies.proceedWithAllProblems();
@@ -231,7 +257,7 @@ public final class EclipseJavaCompiler extends AbstractJavaCompiler {
 
                 log.debug("finding " + pClazzName);
 
-                final String resourceName = ConversionUtils.convertClassToResourcePath(pClazzName);
+                final String resourceName = Utils.convertClassToResourcePath(pClazzName);
 
                 final byte[] clazzBytes = pStore.read(resourceName);
                 if (clazzBytes != null) {
@@ -293,7 +319,7 @@ public final class EclipseJavaCompiler extends AbstractJavaCompiler {
                     return false;
                 }
 
-                final InputStream is = pClassLoader.getResourceAsStream(ConversionUtils.convertClassToResourcePath(pClazzName));
+                final InputStream is = pClassLoader.getResourceAsStream(Utils.convertClassToResourcePath(pClazzName));
                 if (is != null) {
                     log.debug("found the class for " + pClazzName + "- no package");
                     try {
@@ -368,7 +394,7 @@ public final class EclipseJavaCompiler extends AbstractJavaCompiler {
                             }
                             clazzName.append(compoundName[j]);
                         }
-                        pStore.write(clazzName.toString().replace('.', '/') + ".class", clazzFile.getBytes());
+                        store.write(clazzName.toString().replace('.', '/') + ".class", clazzFile.getBytes());
                     }
                 }
             }
@@ -380,7 +406,8 @@ public final class EclipseJavaCompiler extends AbstractJavaCompiler {
 
         final CompilationProblem[] result = new CompilationProblem[problems.size()];
         problems.toArray(result);
-        return new org.apache.commons.jci.compilers.CompilationResult(result);
+        event.complete(result);
+        return new com.github.LimeiloN.dyncompiler.compilers.CompilationResult(result);
     }
 
     public JavaCompilerSettings createDefaultSettings() {
@@ -25,11 +25,12 @@
 
 package com.github.LimeiloN.dyncompiler.impl.ecj;
 
+import com.github.LimeiloN.dyncompiler.compilers.JavaCompilerSettings;
+import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
+
 import java.util.HashMap;
 import java.util.Map;
 
-import org.eclipse.jdt.internal.compiler.impl.CompilerOptions;
-
 /**
  * Native Eclipse compiler settings
  * 
@@ -68,6 +69,10 @@ public final class EclipseJavaCompilerSettings extends JavaCompilerSettings {
     	put("1.5", CompilerOptions.VERSION_1_5);
     	put("1.6", CompilerOptions.VERSION_1_6);
     	put("1.7", CompilerOptions.VERSION_1_7);
+    	put("1.8", CompilerOptions.VERSION_1_8);
+    	put("9", CompilerOptions.VERSION_9);
+    	put("10", CompilerOptions.VERSION_10);
+    	put("11", CompilerOptions.VERSION_11);
     }};
     
     private String toNativeVersion( final String pVersion ) {
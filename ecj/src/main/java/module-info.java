@@ -1,6 +1,8 @@
 module com.github.LimeiloN.dyncompiler.ecj {
 
     requires com.github.LimeiloN.dyncompiler;
+    requires ecj;
+    requires org.apache.logging.log4j;
 
     exports com.github.LimeiloN.dyncompiler.impl.ecj;
 }
\ No newline at end of file
@@ -26,6 +26,8 @@
 package com.github.LimeiloN.dyncompiler.impl.janino;
 
 import com.github.LimeiloN.dyncompiler.problems.CompilationProblem;
+import org.codehaus.commons.compiler.LocatedException;
+import org.codehaus.commons.compiler.Location;
 
 /**
  * Janino version of a CompilationProblem
@@ -44,7 +46,7 @@ public final class JaninoCompilationProblem implements CompilationProblem {
     }
 
     public JaninoCompilationProblem(final Location pLocation, final String pMessage, final boolean pError) {
-      this(pLocation.getFileName(), pLocation, pMessage, pError);
+      this(pLocation == null ? null : pLocation.getFileName(), pLocation, pMessage, pError);
     }
 
     public JaninoCompilationProblem(final String pFilename, final String pMessage, final boolean pError) {
@@ -25,6 +25,28 @@
 
 package com.github.LimeiloN.dyncompiler.impl.janino;
 
+import com.github.LimeiloN.dyncompiler.compilers.AbstractJavaCompiler;
+import com.github.LimeiloN.dyncompiler.compilers.CompilationResult;
+import com.github.LimeiloN.dyncompiler.compilers.JavaCompilerSettings;
+import com.github.LimeiloN.dyncompiler.events.CompileEvent;
+import com.github.LimeiloN.dyncompiler.problems.CompilationProblem;
+import com.github.LimeiloN.dyncompiler.readers.ResourceReader;
+import com.github.LimeiloN.dyncompiler.stores.ResourceStore;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.commons.compiler.ErrorHandler;
+import org.codehaus.commons.compiler.LocatedException;
+import org.codehaus.commons.compiler.Location;
+import org.codehaus.commons.compiler.WarningHandler;
+import org.codehaus.commons.compiler.util.StringPattern;
+import org.codehaus.commons.compiler.util.resource.Resource;
+import org.codehaus.commons.compiler.util.resource.ResourceCreator;
+import org.codehaus.commons.compiler.util.resource.ResourceFinder;
+import org.codehaus.janino.ClassLoaderIClassLoader;
+import org.codehaus.janino.Compiler;
+import org.codehaus.janino.FilterWarningHandler;
+
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -33,30 +55,12 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 
-import org.apache.commons.jci.problems.CompilationProblem;
-import org.apache.commons.jci.readers.ResourceReader;
-import org.apache.commons.jci.stores.ResourceStore;
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.codehaus.commons.compiler.CompileException;
-import org.codehaus.commons.compiler.LocatedException;
-import org.codehaus.commons.compiler.Location;
-import org.codehaus.janino.ClassLoaderIClassLoader;
-import org.codehaus.janino.Compiler;
-import org.codehaus.janino.FilterWarningHandler;
-import org.codehaus.janino.UnitCompiler.ErrorHandler;
-import org.codehaus.janino.WarningHandler;
-import org.codehaus.janino.util.StringPattern;
-import org.codehaus.janino.util.resource.Resource;
-import org.codehaus.janino.util.resource.ResourceCreator;
-import org.codehaus.janino.util.resource.ResourceFinder;
-
 /**
  * @author tcurdt
  */
 public final class JaninoJavaCompiler extends AbstractJavaCompiler {
 
-    private final Log log = LogFactory.getLog(JaninoJavaCompiler.class);
+    private static final Logger log = LogManager.getLogger(JaninoJavaCompiler.class);
 
     private final JaninoJavaCompilerSettings defaultSettings;
 
@@ -113,45 +117,48 @@ public final class JaninoJavaCompiler extends AbstractJavaCompiler {
     
     public CompilationResult compile( final String[] pSourceNames, final ResourceReader pResourceReader, final ResourceStore pStore, final ClassLoader pClassLoader, final JavaCompilerSettings pSettings ) {
 
+    	final CompileEvent event = CompileEvent.begin("janino", pSourceNames);
+    	final ResourceStore store = event.record(pStore);
     	final Collection<CompilationProblem> problems = new ArrayList<CompilationProblem>();
     	
     	final StringPattern[] pattern = StringPattern.PATTERNS_NONE;
 
-    	final Compiler compiler = new Compiler(
-    			new ResourceFinder() {
+    	final Compiler compiler = new Compiler();
+    	compiler.setSourceFinder(new ResourceFinder() {
 					@Override
                     public Resource findResource( final String pSourceName ) {
 						final byte[] bytes = pResourceReader.getBytes(pSourceName);
-						
+
 						if (bytes == null) {
 							log.debug("failed to find source " + pSourceName);
 							return null;
 						}
-						
+
 						log.debug("reading " + pSourceName + " (" + bytes.length + ")");
-						
+
 						return new JciResource(pSourceName, bytes);
-					}    		
-    			},
-    			new ClassLoaderIClassLoader(pClassLoader),
-    			new ResourceFinder() {
+					}
+    			});
+    	compiler.setIClassLoader(new ClassLoaderIClassLoader(pClassLoader));
+
+    	compiler.setClassFileFinder(new ResourceFinder() {
 					@Override
                     public Resource findResource( final String pResourceName ) {
 						final byte[] bytes = pStore.read(pResourceName);
-						
+
 						if (bytes == null) {
 							log.debug("failed to find " + pResourceName);
 							return null;
 						}
 
 						log.debug("reading " + pResourceName + " (" + bytes.length + ")");
-						
+
 						return new JciResource(pResourceName, bytes);
-					}    		
-    			},
-    			new ResourceCreator() {
+					}
+    			});
+    	compiler.setClassFileCreator(new ResourceCreator() {
 					public OutputStream createResource( final String pResourceName ) throws IOException {
-						return new JciOutputStream(pResourceName, pStore);
+						return new JciOutputStream(pResourceName, store);
 					}
 
 					public boolean deleteResource( final String pResourceName ) {
@@ -159,28 +166,26 @@ public final class JaninoJavaCompiler extends AbstractJavaCompiler {
 
 						pStore.remove(pResourceName);
 						return true;
-					}    				
-    			},
-    			pSettings.getSourceEncoding(),
-    			false,
-    			pSettings.isDebug(),
-                pSettings.isDebug(),
-                pSettings.isDebug(),
-    			new FilterWarningHandler(pattern, new WarningHandler() {
+					}
+    			});
+    	compiler.setCharacterEncoding(pSettings.getSourceEncoding());
+    	compiler.setDebugSource(pSettings.isDebug());
+    	compiler.setDebugLines(pSettings.isDebug());
+    	compiler.setDebugVars(pSettings.isDebug());
+    	compiler.setWarningHandler(new FilterWarningHandler(pattern, new WarningHandler() {
 						public void handleWarning( final String pHandle, final String pMessage, final Location pLocation ) {
-							final CompilationProblem problem = new JaninoCompilationProblem(pLocation.getFileName(), pLocation, pMessage, false);
+							final CompilationProblem problem = new JaninoCompilationProblem(pLocation, pMessage, false);
 							if (problemHandler != null) {
 								problemHandler.handle(problem);
 							}
 							problems.add(problem);
-						}    		
-			    	})    			
-    			);
-    	
-    	
+						}
+			    	}));
+
+
     	compiler.setCompileErrorHandler(new ErrorHandler() {
 			public void handleError( final String pMessage, final Location pLocation ) throws CompileException {
-				final CompilationProblem problem = new JaninoCompilationProblem(pLocation.getFileName(), pLocation, pMessage, true);
+				final CompilationProblem problem = new JaninoCompilationProblem(pLocation, pMessage, true);
 				if (problemHandler != null) {
 					problemHandler.handle(problem);
 				}
@@ -194,18 +199,25 @@ public final class JaninoJavaCompiler extends AbstractJavaCompiler {
             log.debug("compiling " + pSourceNames[i]);
             final byte[] source = pResourceReader.getBytes(pSourceNames[i]);
             resources[i] = new JciResource(pSourceNames[i], source);
+            if (source != null) {
+                event.sourceRead(source.length);
+            }
         }
         
         try {
             compiler.compile(resources);
         } catch ( LocatedException e ) {
-            problems.add(new JaninoCompilationProblem(e));
+            // Janino ends with a summary exception when errors were already reported to the handler
+            if (problems.stream().noneMatch(CompilationProblem::isError)) {
+                problems.add(new JaninoCompilationProblem(e));
+            }
         } catch ( IOException e ) {
             // low level problems reading or writing bytes
         	log.error("this error should have been cought before", e);
         }        
         final CompilationProblem[] result = new CompilationProblem[problems.size()];
         problems.toArray(result);
+        event.complete(result);
         return new CompilationResult(result);
     }
 
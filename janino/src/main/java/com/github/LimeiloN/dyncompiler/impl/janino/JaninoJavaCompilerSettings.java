@@ -25,6 +25,8 @@
 
 package com.github.LimeiloN.dyncompiler.impl.janino;
 
+import com.github.LimeiloN.dyncompiler.compilers.JavaCompilerSettings;
+
 public final class JaninoJavaCompilerSettings extends JavaCompilerSettings {
     // TODO: implement the native janino compiler settings
 
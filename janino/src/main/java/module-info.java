@@ -2,6 +2,8 @@ module com.github.LimeiloN.dyncompiler.janino {
 
     requires com.github.LimeiloN.dyncompiler;
     requires janino;
+    requires commons.compiler;
+    requires org.apache.logging.log4j;
 
     exports com.github.LimeiloN.dyncompiler.impl.janino;
 }
\ No newline at end of file